@@ -0,0 +1,173 @@
+package org.cryptomator.sanitizer.benchmarks;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import org.cryptomator.cryptolib.Cryptors;
+import org.cryptomator.cryptolib.api.Cryptor;
+import org.cryptomator.cryptolib.v1.EncryptingWritableByteChannel;
+
+import com.google.common.io.BaseEncoding;
+
+/**
+ * Generates a valid vault with random content. The same shape and seed always result in the same cleartext tree, while keys and ciphertexts differ between runs.
+ */
+public class SyntheticVault {
+
+	public static final String PASSPHRASE = "benchmark";
+
+	private static final int VAULT_VERSION = 6;
+	private static final int SHORTENING_THRESHOLD = 129;
+	private static final int DIRECTORIES_PER_DIRECTORY = 2;
+
+	private final Path location;
+	private final Cryptor cryptor;
+	private final Random random;
+
+	private SyntheticVault(Path location, Cryptor cryptor, long seed) {
+		this.location = location;
+		this.cryptor = cryptor;
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * @param location An empty or not yet existing directory
+	 * @param files Number of files
+	 * @param depth Number of directory levels below the root directory. Each directory contains {@value #DIRECTORIES_PER_DIRECTORY} subdirectories.
+	 * @param longNameRatio Fraction of files and directories with names long enough to be shortened to a .lng file
+	 * @param minFileSize Minimum cleartext file size
+	 * @param maxFileSize Cleartext file sizes are distributed uniformly between the minimum and this size
+	 */
+	public static void generate(Path location, int files, int depth, double longNameRatio, int minFileSize, int maxFileSize) throws IOException {
+		Cryptor cryptor = Cryptors.version1(new SecureRandom()).createNew();
+		try {
+			Files.createDirectories(location);
+			Files.write(location.resolve("masterkey.cryptomator"), cryptor.writeKeysToMasterkeyFile(PASSPHRASE, VAULT_VERSION).serialize());
+			new SyntheticVault(location, cryptor, 42).generate(files, depth, longNameRatio, minFileSize, maxFileSize);
+		} finally {
+			cryptor.destroy();
+		}
+	}
+
+	public static void delete(Path location) throws IOException {
+		if (!Files.exists(location)) {
+			return;
+		}
+		Files.walkFileTree(location, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	private void generate(int files, int depth, double longNameRatio, int minFileSize, int maxFileSize) throws IOException {
+		List<String> directoryIds = new ArrayList<>();
+		List<String> currentLevel = new ArrayList<>();
+		createDirectory("");
+		directoryIds.add("");
+		currentLevel.add("");
+		for (int level = 0; level < depth; level++) {
+			List<String> nextLevel = new ArrayList<>();
+			for (String parentId : currentLevel) {
+				for (int i = 0; i < DIRECTORIES_PER_DIRECTORY; i++) {
+					String directoryId = UUID.randomUUID().toString();
+					String name = name("directory" + directoryIds.size(), longNameRatio);
+					writeNode(parentId, "0" + encryptName(name, parentId), directoryId.getBytes(UTF_8));
+					createDirectory(directoryId);
+					directoryIds.add(directoryId);
+					nextLevel.add(directoryId);
+				}
+			}
+			currentLevel = nextLevel;
+		}
+		for (int i = 0; i < files; i++) {
+			String parentId = directoryIds.get(i % directoryIds.size());
+			String name = name("file" + i + ".bin", longNameRatio);
+			byte[] content = new byte[minFileSize + random.nextInt(maxFileSize - minFileSize + 1)];
+			random.nextBytes(content);
+			writeNode(parentId, encryptName(name, parentId), encryptContent(content));
+		}
+	}
+
+	private String name(String shortName, double longNameRatio) {
+		if (random.nextDouble() < longNameRatio) {
+			StringBuilder name = new StringBuilder(shortName);
+			while (name.length() < SHORTENING_THRESHOLD) {
+				name.insert(0, "long-");
+			}
+			return name.toString();
+		} else {
+			return shortName;
+		}
+	}
+
+	private String encryptName(String name, String parentId) {
+		return cryptor.fileNameCryptor().encryptFilename(name, parentId.getBytes(UTF_8));
+	}
+
+	private Path directoryPath(String directoryId) {
+		String hashedId = cryptor.fileNameCryptor().hashDirectoryId(directoryId);
+		return location.resolve("d").resolve(hashedId.substring(0, 2)).resolve(hashedId.substring(2));
+	}
+
+	private void createDirectory(String directoryId) throws IOException {
+		Files.createDirectories(directoryPath(directoryId));
+	}
+
+	private void writeNode(String parentId, String encryptedName, byte[] content) throws IOException {
+		String fileName = encryptedName;
+		if (encryptedName.length() > SHORTENING_THRESHOLD) {
+			String hash = BaseEncoding.base32().encode(sha1(encryptedName.getBytes(UTF_8)));
+			fileName = hash + ".lng";
+			Path mFile = location.resolve("m").resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(fileName);
+			Files.createDirectories(mFile.getParent());
+			Files.write(mFile, encryptedName.getBytes(UTF_8));
+		}
+		Files.write(directoryPath(parentId).resolve(fileName), content);
+	}
+
+	private byte[] encryptContent(byte[] cleartext) {
+		ByteArrayOutputStream ciphertext = new ByteArrayOutputStream();
+		try (WritableByteChannel channel = new EncryptingWritableByteChannel(Channels.newChannel(ciphertext), cryptor)) {
+			channel.write(ByteBuffer.wrap(cleartext));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return ciphertext.toByteArray();
+	}
+
+	private static byte[] sha1(byte[] input) {
+		try {
+			return MessageDigest.getInstance("SHA1").digest(input);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("Java platform is required to support SHA1.", e);
+		}
+	}
+
+}
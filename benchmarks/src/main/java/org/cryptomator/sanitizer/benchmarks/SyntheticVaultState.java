@@ -0,0 +1,74 @@
+package org.cryptomator.sanitizer.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.cryptomator.cryptolib.api.Cryptor;
+import org.cryptomator.sanitizer.CryptorHolder;
+import org.cryptomator.sanitizer.VaultIndex;
+import org.cryptomator.sanitizer.integrity.AbortCheckException;
+import org.cryptomator.sanitizer.integrity.problems.Problems;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * A {@link SyntheticVault} generated once per trial. The shape can be changed with JMH parameters, e.g. <code>-p files=100000 -p depth=8</code>.
+ */
+@State(Scope.Benchmark)
+public class SyntheticVaultState {
+
+	@Param("1000")
+	public int files;
+
+	@Param("4")
+	public int depth;
+
+	@Param("0.1")
+	public double longNameRatio;
+
+	@Param("0")
+	public int minFileSize;
+
+	@Param("65536")
+	public int maxFileSize;
+
+	private Path location;
+	private CryptorHolder cryptorHolder;
+	private VaultIndex index;
+
+	@Setup(Level.Trial)
+	public void generate() throws IOException, AbortCheckException {
+		location = Files.createTempDirectory("sanitizer-benchmark");
+		SyntheticVault.generate(location, files, depth, longNameRatio, minFileSize, maxFileSize);
+		cryptorHolder = new CryptorHolder();
+		cryptorHolder.createCryptor(new Problems(location), location, SyntheticVault.PASSPHRASE);
+		index = VaultIndex.scan(location);
+	}
+
+	@TearDown(Level.Trial)
+	public void delete() throws IOException {
+		cryptorHolder.close();
+		SyntheticVault.delete(location);
+	}
+
+	public Path location() {
+		return location;
+	}
+
+	public Cryptor cryptor() {
+		return cryptorHolder.optionalCryptor().get();
+	}
+
+	/**
+	 * @return an index scanned after the vault has been generated
+	 */
+	public VaultIndex index() {
+		return index;
+	}
+
+}
@@ -0,0 +1,51 @@
+package org.cryptomator.sanitizer.integrity;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.cryptomator.sanitizer.CryptorHolder;
+import org.cryptomator.sanitizer.benchmarks.SyntheticVault;
+import org.cryptomator.sanitizer.benchmarks.SyntheticVaultState;
+import org.cryptomator.sanitizer.integrity.problems.Problem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A complete check of a vault, including unlocking the masterkey file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class IntegrityCheckBenchmark {
+
+	@Param("1")
+	public int threads;
+
+	@Benchmark
+	public Set<Problem> shallow(SyntheticVaultState vault) throws AbortCheckException {
+		return check(vault, false);
+	}
+
+	@Benchmark
+	public Set<Problem> deep(SyntheticVaultState vault) throws AbortCheckException {
+		return check(vault, true);
+	}
+
+	private Set<Problem> check(SyntheticVaultState vault, boolean deep) throws AbortCheckException {
+		try (CryptorHolder cryptorHolder = new CryptorHolder()) {
+			return new IntegrityCheck(cryptorHolder).withThreads(threads).check(vault.location(), SyntheticVault.PASSPHRASE, deep);
+		}
+	}
+
+}
@@ -0,0 +1,83 @@
+package org.cryptomator.sanitizer.integrity.checks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.cryptomator.sanitizer.CryptorHolder;
+import org.cryptomator.sanitizer.benchmarks.SyntheticVault;
+import org.cryptomator.sanitizer.integrity.AbortCheckException;
+import org.cryptomator.sanitizer.integrity.problems.Problems;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Authenticates a single file of the given size. Divide the size by the reported time to get the throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AuthenticationCheckBenchmark {
+
+	@Param("67108864")
+	public int fileSize;
+
+	@Param("9223372036854775807")
+	public long mmapThreshold;
+
+	private Path location;
+	private CryptorHolder cryptorHolder;
+	private Path file;
+	private Check headerCheck;
+	private Check contentCheck;
+
+	@Setup(Level.Trial)
+	public void generate() throws IOException, AbortCheckException {
+		location = Files.createTempDirectory("sanitizer-benchmark");
+		SyntheticVault.generate(location, 1, 0, 0.0, fileSize, fileSize);
+		try (Stream<Path> files = Files.walk(location.resolve("d"))) {
+			file = files.filter(Files::isRegularFile).findFirst().get();
+		}
+		cryptorHolder = new CryptorHolder();
+		cryptorHolder.createCryptor(new Problems(location), location, SyntheticVault.PASSPHRASE, true);
+		headerCheck = new AuthenticationCheck(cryptorHolder.optionalCryptor().get(), false);
+		contentCheck = new AuthenticationCheck(cryptorHolder.optionalCryptor().get(), true, AuthenticationOptions.DEFAULTS.withMmapThreshold(mmapThreshold).withMacKey(cryptorHolder.optionalMacKey()));
+	}
+
+	@TearDown(Level.Trial)
+	public void delete() throws IOException {
+		cryptorHolder.close();
+		SyntheticVault.delete(location);
+	}
+
+	@Benchmark
+	public Problems header() {
+		Problems problems = new Problems();
+		headerCheck.check(problems, file);
+		return problems;
+	}
+
+	@Benchmark
+	public Problems content() {
+		Problems problems = new Problems();
+		contentCheck.check(problems, file);
+		return problems;
+	}
+
+}
@@ -0,0 +1,83 @@
+package org.cryptomator.sanitizer.integrity.checks;
+
+import static java.util.stream.Collectors.toList;
+import static org.cryptomator.sanitizer.integrity.checks.Checks.decryptedNameCheck;
+import static org.cryptomator.sanitizer.integrity.checks.Checks.hasCorrespondingDFileIn;
+import static org.cryptomator.sanitizer.integrity.checks.Checks.hasCorrespondingDirectoryFile;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.cryptomator.sanitizer.MetadataFileCache;
+import org.cryptomator.sanitizer.VaultIndex;
+import org.cryptomator.sanitizer.benchmarks.SyntheticVaultState;
+import org.cryptomator.sanitizer.integrity.problems.Problems;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decrypts the names of all files and directories of the vault. Directory IDs are collected during setup, so only name decryption is measured. M-files are not
+ * cached, so each iteration reads and decrypts like a single check does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DecryptedNameCheckBenchmark {
+
+	private List<Path> regularNames;
+	private List<Path> mFiles;
+	private Check regularNameCheck;
+	private Check longNameCheck;
+
+	@Setup(Level.Trial)
+	public void setup(SyntheticVaultState vault) {
+		VaultIndex index = vault.index();
+		Path dFolder = vault.location().resolve("d");
+		Path mFolder = vault.location().resolve("m");
+		regularNames = index.walk() //
+				.filter(VaultIndex.Entry::isRegularFile) //
+				.map(VaultIndex.Entry::path) //
+				.filter(path -> path.startsWith(dFolder) && !path.getFileName().toString().endsWith(".lng")) //
+				.collect(toList());
+		mFiles = index.walk() //
+				.filter(VaultIndex.Entry::isRegularFile) //
+				.map(VaultIndex.Entry::path) //
+				.filter(path -> path.startsWith(mFolder)) //
+				.collect(toList());
+		MetadataFileCache files = new MetadataFileCache(0);
+		HasCorrespondingDirectoryFileCheck directoryFiles = hasCorrespondingDirectoryFile(vault.cryptor(), index, files);
+		HasCorrespondingDFileCheck dFiles = hasCorrespondingDFileIn(index);
+		regularNameCheck = decryptedNameCheck(vault.cryptor(), directoryFiles);
+		longNameCheck = decryptedNameCheck(vault.cryptor(), directoryFiles, dFiles, files);
+		regularNames();
+		longNames();
+	}
+
+	@Benchmark
+	public Problems regularNames() {
+		Problems problems = new Problems();
+		regularNames.forEach(path -> regularNameCheck.check(problems, path));
+		return problems;
+	}
+
+	@Benchmark
+	public Problems longNames() {
+		Problems problems = new Problems();
+		mFiles.forEach(path -> longNameCheck.check(problems, path));
+		return problems;
+	}
+
+}
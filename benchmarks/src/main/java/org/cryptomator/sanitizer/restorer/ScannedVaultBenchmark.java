@@ -0,0 +1,50 @@
+package org.cryptomator.sanitizer.restorer;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.cryptomator.sanitizer.VaultIndex;
+import org.cryptomator.sanitizer.benchmarks.SyntheticVaultState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Adds all paths below <code>d</code> to a new {@link ScannedVault}, i.e. reconstructs the directory tree without decrypting anything.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScannedVaultBenchmark {
+
+	private List<Path> paths;
+
+	@Setup(Level.Trial)
+	public void setup(SyntheticVaultState vault) {
+		paths = vault.index().walk() //
+				.map(VaultIndex.Entry::path) //
+				.filter(path -> path.startsWith(vault.location().resolve("d"))) //
+				.collect(Collectors.toList());
+	}
+
+	@Benchmark
+	public ScannedVault add(SyntheticVaultState vault) {
+		ScannedVault scannedVault = new ScannedVault(vault.cryptor(), vault.index());
+		paths.forEach(scannedVault::add);
+		return scannedVault;
+	}
+
+}
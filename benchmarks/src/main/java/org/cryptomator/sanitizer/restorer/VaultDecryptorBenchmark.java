@@ -0,0 +1,58 @@
+package org.cryptomator.sanitizer.restorer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.cryptomator.sanitizer.Passphrase;
+import org.cryptomator.sanitizer.benchmarks.SyntheticVault;
+import org.cryptomator.sanitizer.benchmarks.SyntheticVaultState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Restores the complete vault into an empty directory, including unlocking the masterkey file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class VaultDecryptorBenchmark {
+
+	@Param("1")
+	public int threads;
+
+	private Path target;
+
+	@Setup(Level.Invocation)
+	public void createTarget() throws IOException {
+		target = Files.createTempDirectory("sanitizer-benchmark-target");
+	}
+
+	@TearDown(Level.Invocation)
+	public void deleteTarget() throws IOException {
+		SyntheticVault.delete(target);
+	}
+
+	@Benchmark
+	public void run(SyntheticVaultState vault) throws IOException {
+		try (Passphrase passphrase = new Passphrase(SyntheticVault.PASSPHRASE.toCharArray())) {
+			new VaultDecryptor(vault.location(), target, passphrase).withThreads(threads).run();
+		}
+	}
+
+}
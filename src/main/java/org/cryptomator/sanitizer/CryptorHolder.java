@@ -11,13 +11,20 @@ import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.text.Normalizer;
 import java.text.Normalizer.Form;
+import java.util.Arrays;
 import java.util.Optional;
 
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import javax.security.auth.DestroyFailedException;
+
 import org.cryptomator.cryptolib.Cryptors;
 import org.cryptomator.cryptolib.api.Cryptor;
 import org.cryptomator.cryptolib.api.CryptorProvider;
 import org.cryptomator.cryptolib.api.InvalidPassphraseException;
 import org.cryptomator.cryptolib.api.KeyFile;
+import org.cryptomator.cryptolib.common.AesKeyWrap;
+import org.cryptomator.cryptolib.common.Scrypt;
 import org.cryptomator.sanitizer.integrity.AbortCheckException;
 import org.cryptomator.sanitizer.integrity.problems.Problems;
 
@@ -27,13 +34,35 @@ public class CryptorHolder implements AutoCloseable {
 
 	private static final int VAULT_VERSION_INTRODUCING_PASSWORD_NORMALIZATION = 6;
 
+	private static final int KEY_ENCRYPTION_KEY_LENGTH = 32;
+
+	private static final String MAC_ALGORITHM = "HmacSHA256";
+
 	private Optional<Cryptor> cryptor = Optional.empty();
 
+	private Optional<DestroyableSecretKey> macKey = Optional.empty();
+
 	public Optional<Cryptor> optionalCryptor() {
 		return cryptor;
 	}
 
+	/**
+	 * @return the key authenticating file content chunks of the vault unlocked by the last {@link #createCryptor(Problems, Path, CharSequence, boolean)}, empty if no
+	 *         vault is unlocked or the key was not requested
+	 */
+	public Optional<SecretKey> optionalMacKey() {
+		return macKey.map(SecretKey.class::cast);
+	}
+
 	public Optional<Cryptor> createCryptor(Problems problems, Path path, CharSequence passphrase) throws IOException, AbortCheckException {
+		return createCryptor(problems, path, passphrase, false);
+	}
+
+	/**
+	 * @param withMacKey Whether to also unwrap the key authenticating file content chunks. This derives the key encryption key a second time, as the
+	 *            {@link Cryptor} does not expose it, so only request it if chunks will be verified.
+	 */
+	public Optional<Cryptor> createCryptor(Problems problems, Path path, CharSequence passphrase, boolean withMacKey) throws IOException, AbortCheckException {
 		destroyCryptor();
 		Path masterkeyFile = path.resolve("masterkey.cryptomator");
 		try {
@@ -45,7 +74,11 @@ public class CryptorHolder implements AutoCloseable {
 			if (keyFile.getVersion() != VAULT_VERSION) {
 				throw new AbortCheckException(format("Vault version mismatch. Expected: %d Actual: %d", VAULT_VERSION, keyFile.getVersion()));
 			}
-			cryptor = Optional.of(bestGuessCryptorProvider(keyFile).createFromKeyFile(keyFile, normalizePassphrase(keyFile, passphrase), keyFile.getVersion()));
+			CharSequence normalizedPassphrase = normalizePassphrase(keyFile, passphrase);
+			cryptor = Optional.of(bestGuessCryptorProvider(keyFile).createFromKeyFile(keyFile, normalizedPassphrase, keyFile.getVersion()));
+			if (withMacKey) {
+				macKey = Optional.of(unwrapMacKey(keyFile, normalizedPassphrase));
+			}
 			return cryptor;
 		} catch (InvalidPassphraseException e) {
 			throw new AbortCheckException("Invalid passphrase");
@@ -64,6 +97,39 @@ public class CryptorHolder implements AutoCloseable {
 
 	public void destroyCryptor() {
 		cryptor.ifPresent(Cryptor::destroy);
+		cryptor = Optional.empty();
+		macKey.ifPresent(DestroyableSecretKey::destroy);
+		macKey = Optional.empty();
+	}
+
+	/**
+	 * Derives the key encryption key from the passphrase like the {@link CryptorProvider} does and unwraps the MAC key with it. Must only be called after the
+	 * passphrase has been verified by creating a {@link Cryptor}.
+	 * <p>
+	 * {@link Scrypt}, {@link AesKeyWrap} and the key file layout read by {@link Version1KeyFile} are internals of cryptolib 1.1.6, which the pom pins. Check them
+	 * again when updating cryptolib.
+	 */
+	private static DestroyableSecretKey unwrapMacKey(KeyFile keyFile, CharSequence passphrase) {
+		Version1KeyFile fields = keyFile.as(Version1KeyFile.class);
+		byte[] kekBytes = Scrypt.scrypt(passphrase, fields.scryptSalt, fields.scryptCostParam, fields.scryptBlockSize, KEY_ENCRYPTION_KEY_LENGTH);
+		try {
+			SecretKey unwrapped = AesKeyWrap.unwrap(new SecretKeySpec(kekBytes, "AES"), fields.hmacMasterKey, MAC_ALGORITHM);
+			DestroyableSecretKey key = new DestroyableSecretKey(unwrapped.getEncoded(), MAC_ALGORITHM);
+			destroyQuietly(unwrapped);
+			return key;
+		} catch (InvalidKeyException e) {
+			throw new IllegalStateException("MAC key not unwrappable with verified passphrase", e);
+		} finally {
+			Arrays.fill(kekBytes, (byte) 0);
+		}
+	}
+
+	private static void destroyQuietly(SecretKey key) {
+		try {
+			key.destroy();
+		} catch (DestroyFailedException e) {
+			// SecretKeySpec can not be destroyed, its copy of the key is left to the garbage collector like in cryptolib
+		}
 	}
 
 	@Override
@@ -71,6 +137,53 @@ public class CryptorHolder implements AutoCloseable {
 		destroyCryptor();
 	}
 
+	/**
+	 * A raw secret key whose bytes are overwritten when it is destroyed, unlike those of a {@link SecretKeySpec}.
+	 */
+	private static class DestroyableSecretKey implements SecretKey {
+
+		private static final long serialVersionUID = 1L;
+
+		private final byte[] key;
+		private final String algorithm;
+		private volatile boolean destroyed;
+
+		DestroyableSecretKey(byte[] key, String algorithm) {
+			this.key = key;
+			this.algorithm = algorithm;
+		}
+
+		@Override
+		public String getAlgorithm() {
+			return algorithm;
+		}
+
+		@Override
+		public String getFormat() {
+			return "RAW";
+		}
+
+		@Override
+		public byte[] getEncoded() {
+			if (destroyed) {
+				throw new IllegalStateException("Key has been destroyed");
+			}
+			return key.clone();
+		}
+
+		@Override
+		public void destroy() {
+			destroyed = true;
+			Arrays.fill(key, (byte) 0);
+		}
+
+		@Override
+		public boolean isDestroyed() {
+			return destroyed;
+		}
+
+	}
+
 	public static CharSequence normalizePassphrase(KeyFile keyFile, CharSequence passphrase) {
 		if (keyFile.getVersion() < VAULT_VERSION_INTRODUCING_PASSWORD_NORMALIZATION) {
 			return passphrase;
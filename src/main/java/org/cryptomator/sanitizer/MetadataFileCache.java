@@ -0,0 +1,131 @@
+package org.cryptomator.sanitizer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.cryptomator.cryptolib.api.FileNameCryptor;
+
+/**
+ * Remembers the contents of small metadata files, i.e. directory files and m-files, so the checks and the restorer read each of them only once per run.
+ * <p>
+ * Files of up to {@value #MAX_FILE_SIZE} bytes are cached, larger files are read every time. The least recently used files are evicted when the cache is full. The
+ * hashed directory ID of a directory file is computed at most once while the file is cached. A cache must only be used for a single vault and must not outlive
+ * changes to it, e.g. by solutions. Thread-safe.
+ */
+public class MetadataFileCache {
+
+	public static final int DEFAULT_MAX_FILES = 65536;
+	static final int MAX_FILE_SIZE = 4096;
+	private static final int SEGMENTS = 16;
+
+	private final Segment[] segments;
+
+	/**
+	 * @param maxFiles Number of files to remember. With zero, files are read every time.
+	 */
+	public MetadataFileCache(int maxFiles) {
+		if (maxFiles < 0) {
+			throw new IllegalArgumentException("maxFiles must not be negative");
+		}
+		if (maxFiles == 0) {
+			this.segments = new Segment[0];
+		} else {
+			this.segments = new Segment[SEGMENTS];
+			for (int i = 0; i < SEGMENTS; i++) {
+				segments[i] = new Segment((maxFiles + SEGMENTS - 1) / SEGMENTS);
+			}
+		}
+	}
+
+	public MetadataFile get(Path file) throws IOException {
+		return get(file, Files::readAllBytes);
+	}
+
+	/**
+	 * @param loader Reads the file if it is not cached
+	 */
+	public MetadataFile get(Path file, Loader loader) throws IOException {
+		if (segments.length == 0) {
+			return new MetadataFile(loader.load(file));
+		}
+		Segment segment = segments[Math.floorMod(file.hashCode(), SEGMENTS)];
+		MetadataFile cached = segment.get(file);
+		if (cached == null) {
+			cached = new MetadataFile(loader.load(file));
+			if (cached.contents.length <= MAX_FILE_SIZE) {
+				segment.put(file, cached);
+			}
+		}
+		return cached;
+	}
+
+	@FunctionalInterface
+	public interface Loader {
+
+		byte[] load(Path file) throws IOException;
+
+	}
+
+	public static class MetadataFile {
+
+		private final byte[] contents;
+		private volatile String hashedDirectoryId;
+
+		private MetadataFile(byte[] contents) {
+			this.contents = contents;
+		}
+
+		/**
+		 * @return the contents of the file, shared by all users of the cache and thus not to be modified
+		 */
+		public byte[] contents() {
+			return contents;
+		}
+
+		public String contentsAsString() {
+			return new String(contents, UTF_8);
+		}
+
+		/**
+		 * @return the hashed directory ID of the directory ID in this directory file
+		 */
+		public String hashedDirectoryId(FileNameCryptor cryptor) {
+			String result = hashedDirectoryId;
+			if (result == null) {
+				result = cryptor.hashDirectoryId(contentsAsString());
+				hashedDirectoryId = result;
+			}
+			return result;
+		}
+
+	}
+
+	private static class Segment {
+
+		private final Map<Path, MetadataFile> files;
+
+		public Segment(int maxFiles) {
+			this.files = new LinkedHashMap<Path, MetadataFile>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Path, MetadataFile> eldest) {
+					return size() > maxFiles;
+				}
+			};
+		}
+
+		public synchronized MetadataFile get(Path file) {
+			return files.get(file);
+		}
+
+		public synchronized void put(Path file, MetadataFile metadataFile) {
+			files.put(file, metadataFile);
+		}
+
+	}
+
+}
@@ -0,0 +1,415 @@
+package org.cryptomator.sanitizer;
+
+import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
+import static java.util.Collections.unmodifiableList;
+
+import java.io.IOException;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * All files and directories of a vault, collected in a single traversal.
+ * <p>
+ * Listings, walks and attributes are answered from memory, so the structure writer, the checks and the restorer do not enumerate the vault again. Each entry only
+ * keeps its name, its parent and the attributes the checks use, paths are resolved when asked for. Walks visit entries like
+ * {@link Files#walk(Path, java.nio.file.FileVisitOption...)}, but the children of each directory in the order of their names. Entries which could not be read do not
+ * abort the scan, they are kept as {@link #failures() failures} instead. Symbolic links to directories are answered like
+ * {@link Files#isDirectory(Path, java.nio.file.LinkOption...)} and {@link Files#list(Path)} would, i.e. as directories with the contents of their targets, but walks do
+ * not descend into them. Instances are immutable and may be shared between threads.
+ */
+public class VaultIndex {
+
+	private static final Comparator<Entry> BY_NAME = Comparator.comparing(entry -> entry.name);
+
+	private final Path vaultLocation;
+	private final Directory root;
+	private final int size;
+	private final List<IOException> failures;
+
+	private VaultIndex(Path vaultLocation, Directory root, int size, List<IOException> failures) {
+		this.vaultLocation = vaultLocation;
+		this.root = root;
+		this.size = size;
+		this.failures = failures;
+	}
+
+	/**
+	 * If the vault location or a directory inside the vault is a symbolic link, the directory it points to is scanned, but entries keep their paths below the link.
+	 * Links pointing to a directory containing them are reported as {@link #failures() failures} and kept as empty directories.
+	 */
+	public static VaultIndex scan(Path vaultLocation) throws IOException {
+		Path start = Files.isSymbolicLink(vaultLocation) ? vaultLocation.toRealPath() : vaultLocation;
+		Scanner scanner = new Scanner(vaultLocation);
+		scanner.scan(start);
+		if (scanner.root == null) {
+			throw new NotDirectoryException(vaultLocation.toString());
+		}
+		return new VaultIndex(vaultLocation, scanner.root, scanner.size, unmodifiableList(scanner.failures));
+	}
+
+	public Path vaultLocation() {
+		return vaultLocation;
+	}
+
+	/**
+	 * @return the errors of entries which could not be read during the scan. Such an entry is missing, or if it is a directory which could not be listed, it is
+	 *         empty.
+	 */
+	public List<IOException> failures() {
+		return failures;
+	}
+
+	/**
+	 * @return the number of entries including the vault directory itself
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Looks the path up name by name, starting at the vault location.
+	 */
+	public Optional<Entry> entry(Path path) {
+		if (!path.startsWith(vaultLocation)) {
+			return Optional.empty();
+		}
+		Entry entry = root;
+		for (int i = vaultLocation.getNameCount(); i < path.getNameCount() && entry != null; i++) {
+			entry = entry instanceof Directory ? ((Directory) entry).child(path.getName(i)) : null;
+		}
+		return Optional.ofNullable(entry);
+	}
+
+	public boolean exists(Path path) {
+		return entry(path).isPresent();
+	}
+
+	/**
+	 * @return <code>true</code> for directories and symbolic links to directories
+	 */
+	public boolean isDirectory(Path path) {
+		return entry(path).filter(Directory.class::isInstance).isPresent();
+	}
+
+	public boolean isRegularFile(Path path) {
+		return entry(path).map(Entry::isRegularFile).orElse(false);
+	}
+
+	public List<Entry> children(Path directory) throws IOException {
+		Entry entry = entry(directory).orElseThrow(() -> new NoSuchFileException(directory.toString()));
+		if (entry instanceof Directory) {
+			return unmodifiableList(Arrays.asList(((Directory) entry).children));
+		} else {
+			throw new NotDirectoryException(directory.toString());
+		}
+	}
+
+	public List<Path> list(Path directory) throws IOException {
+		List<Entry> children = children(directory);
+		List<Path> paths = new ArrayList<>(children.size());
+		for (Entry child : children) {
+			paths.add(directory.resolve(child.name));
+		}
+		return paths;
+	}
+
+	public Stream<Entry> walk() {
+		return walk(root, Integer.MAX_VALUE);
+	}
+
+	public Stream<Entry> walk(Path start) throws IOException {
+		return walk(start, Integer.MAX_VALUE);
+	}
+
+	public Stream<Entry> walk(Path start, int maxDepth) throws IOException {
+		return walk(entry(start).orElseThrow(() -> new NoSuchFileException(start.toString())), maxDepth);
+	}
+
+	/**
+	 * Like {@link Files#walk(Path, java.nio.file.FileVisitOption...)}, symbolic links are visited but not followed.
+	 */
+	private Stream<Entry> walk(Entry start, int maxDepth) {
+		if (!(start instanceof Directory) || maxDepth == 0 || start.isSymbolicLink()) {
+			return Stream.of(start);
+		}
+		return Stream.concat(Stream.of(start), Arrays.stream(((Directory) start).children).flatMap(child -> walk(child, maxDepth - 1)));
+	}
+
+	/**
+	 * A file or directory of the vault, which also serves as its own {@link #attributes() attributes}.
+	 */
+	public static class Entry implements BasicFileAttributes {
+
+		private static final byte REGULAR_FILE = 1;
+		private static final byte DIRECTORY = 2;
+		private static final byte SYMBOLIC_LINK = 4;
+		private static final byte OTHER = 8;
+
+		private final Entry parent;
+		private final Path name;
+		private final byte type;
+		private final long size;
+		private final long lastModified;
+		private final Object fileKey;
+
+		/**
+		 * @param name The file name, or the full path for the vault directory itself, which has no parent
+		 */
+		private Entry(Entry parent, Path name, BasicFileAttributes attributes) {
+			this.parent = parent;
+			this.name = name;
+			this.type = type(attributes);
+			this.size = attributes.size();
+			this.lastModified = attributes.lastModifiedTime().toMillis();
+			this.fileKey = attributes.fileKey();
+		}
+
+		private static byte type(BasicFileAttributes attributes) {
+			return (byte) ((attributes.isRegularFile() ? REGULAR_FILE : 0) //
+					| (attributes.isDirectory() ? DIRECTORY : 0) //
+					| (attributes.isSymbolicLink() ? SYMBOLIC_LINK : 0) //
+					| (attributes.isOther() ? OTHER : 0));
+		}
+
+		public Path path() {
+			return parent == null ? name : parent.path().resolve(name);
+		}
+
+		/**
+		 * @return the attributes read during the scan, without following symbolic links. Times are kept in milliseconds, and as only the time of the last
+		 *         modification is kept, it is also returned as the time of the last access and of the creation.
+		 */
+		public BasicFileAttributes attributes() {
+			return this;
+		}
+
+		@Override
+		public FileTime lastModifiedTime() {
+			return FileTime.fromMillis(lastModified);
+		}
+
+		@Override
+		public FileTime lastAccessTime() {
+			return lastModifiedTime();
+		}
+
+		@Override
+		public FileTime creationTime() {
+			return lastModifiedTime();
+		}
+
+		@Override
+		public boolean isRegularFile() {
+			return (type & REGULAR_FILE) != 0;
+		}
+
+		@Override
+		public boolean isDirectory() {
+			return (type & DIRECTORY) != 0;
+		}
+
+		@Override
+		public boolean isSymbolicLink() {
+			return (type & SYMBOLIC_LINK) != 0;
+		}
+
+		@Override
+		public boolean isOther() {
+			return (type & OTHER) != 0;
+		}
+
+		@Override
+		public long size() {
+			return size;
+		}
+
+		@Override
+		public Object fileKey() {
+			return fileKey;
+		}
+
+	}
+
+	/**
+	 * A directory or a symbolic link to a directory, whose children are sorted by name to be looked up by binary search.
+	 */
+	private static class Directory extends Entry {
+
+		private static final Entry[] NO_CHILDREN = new Entry[0];
+
+		private Entry[] children = NO_CHILDREN;
+
+		private Directory(Entry parent, Path name, BasicFileAttributes attributes) {
+			super(parent, name, attributes);
+		}
+
+		private Entry child(Path name) {
+			int low = 0;
+			int high = children.length - 1;
+			while (low <= high) {
+				int middle = (low + high) >>> 1;
+				int comparison = children[middle].name.compareTo(name);
+				if (comparison < 0) {
+					low = middle + 1;
+				} else if (comparison > 0) {
+					high = middle - 1;
+				} else {
+					return children[middle];
+				}
+			}
+			return null;
+		}
+
+	}
+
+	private static class Scanner extends SimpleFileVisitor<Path> {
+
+		private final Path vaultLocation;
+		private final Deque<Listing> open = new ArrayDeque<>();
+		private final List<IOException> failures = new ArrayList<>();
+		private Directory root;
+		private int size;
+		private Directory linkedDirectory;
+
+		public Scanner(Path vaultLocation) {
+			this.vaultLocation = vaultLocation;
+		}
+
+		/**
+		 * Walks the directory tree at the given start. Nested calls scan the targets of symbolic links, whose entries are added to the {@link #linkedDirectory}.
+		 */
+		public void scan(Path start) throws IOException {
+			Files.walkFileTree(start, this);
+		}
+
+		@Override
+		public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+			if (linkedDirectory != null) {
+				open.push(new Listing(linkedDirectory));
+				linkedDirectory = null;
+			} else if (root == null) {
+				root = new Directory(null, vaultLocation, attrs);
+				size++;
+				open.push(new Listing(root));
+			} else {
+				open.push(new Listing(add(new Directory(open.peek().directory, dir.getFileName(), attrs))));
+			}
+			return FileVisitResult.CONTINUE;
+		}
+
+		/**
+		 * A directory whose listing broke off keeps the children read until then.
+		 */
+		@Override
+		public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+			if (exc != null) {
+				failures.add(exc);
+			}
+			open.pop().finish();
+			return FileVisitResult.CONTINUE;
+		}
+
+		@Override
+		public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+			if (open.isEmpty()) {
+				return FileVisitResult.CONTINUE;
+			}
+			if (attrs.isSymbolicLink() && Files.isDirectory(file)) {
+				scanLinkedDirectory(file, add(new Directory(open.peek().directory, file.getFileName(), attrs)));
+			} else {
+				add(new Entry(open.peek().directory, file.getFileName(), attrs));
+			}
+			return FileVisitResult.CONTINUE;
+		}
+
+		/**
+		 * The link stays in the index as it is, its target only provides the children.
+		 */
+		private void scanLinkedDirectory(Path link, Directory directory) {
+			try {
+				Path target = link.toRealPath();
+				if (link.getParent().toRealPath().startsWith(target)) {
+					failures.add(new FileSystemLoopException(directory.path().toString()));
+					return;
+				}
+				linkedDirectory = directory;
+				scan(target);
+			} catch (IOException e) {
+				failures.add(e);
+			} finally {
+				linkedDirectory = null;
+			}
+		}
+
+		/**
+		 * Keeps the entry if at least its attributes can be read, so a directory which cannot be listed is still known.
+		 */
+		@Override
+		public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+			if (root == null) {
+				throw exc;
+			}
+			failures.add(exc);
+			if (linkedDirectory != null) {
+				// the target of a link could not be listed, the link is kept as an empty directory
+				return FileVisitResult.CONTINUE;
+			}
+			try {
+				BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class, NOFOLLOW_LINKS);
+				if (attrs.isDirectory()) {
+					add(new Directory(open.peek().directory, file.getFileName(), attrs));
+				} else {
+					add(new Entry(open.peek().directory, file.getFileName(), attrs));
+				}
+			} catch (IOException e) {
+				// the entry is missing from the index, its failure is kept
+			}
+			return FileVisitResult.CONTINUE;
+		}
+
+		private <T extends Entry> T add(T entry) {
+			open.peek().children.add(entry);
+			size++;
+			return entry;
+		}
+
+	}
+
+	/**
+	 * The children of a directory collected while it is being scanned.
+	 */
+	private static class Listing {
+
+		private final Directory directory;
+		private final List<Entry> children = new ArrayList<>();
+
+		public Listing(Directory directory) {
+			this.directory = directory;
+		}
+
+		public void finish() {
+			if (!children.isEmpty()) {
+				Entry[] sorted = children.toArray(new Entry[children.size()]);
+				Arrays.sort(sorted, BY_NAME);
+				directory.children = sorted;
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,30 @@
+package org.cryptomator.sanitizer;
+
+import org.cryptomator.cryptolib.api.KeyFile;
+
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * The fields of a masterkey file of vault versions 1 to 6 which are needed to unwrap its keys, read via {@link KeyFile#as(Class)}. Mirrors the package-private
+ * key file of cryptolib 1.1.6, so it has to be checked again when updating cryptolib.
+ */
+class Version1KeyFile extends KeyFile {
+
+	@Expose
+	@SerializedName("scryptSalt")
+	byte[] scryptSalt;
+
+	@Expose
+	@SerializedName("scryptCostParam")
+	int scryptCostParam;
+
+	@Expose
+	@SerializedName("scryptBlockSize")
+	int scryptBlockSize;
+
+	@Expose
+	@SerializedName("hmacMasterKey")
+	byte[] hmacMasterKey;
+
+}
@@ -25,8 +25,16 @@ class CheckCommand implements Command {
 			+ "-vault vaultPath" //
 			+ " [-passphraseFile passphraseFile]" //
 			+ " [-deep]" //
+			+ " [-incremental [cacheFile]]" //
+			+ " [-maxDamagedChunks chunks]" //
+			+ " [-mmapThreshold MiB]" //
+			+ " [-profile]" //
+			+ " [-readAhead ioThreads]" //
+			+ " [-threads threads]" //
+			+ " [-unsorted]" //
 			+ " [-solve enabledSolution ...]" //
-			+ " [-output outputPrefix]";
+			+ " [-output outputPrefix]" //
+			+ " [-statsFile statsFile]";
 	private static final String HEADER = "\nDetects problems in Cryptomator vaults.\n";
 	public static final Options OPTIONS = new Options();
 	private static final Set<String> ALLOWED_PROBLEMS_TO_SOLVE = new HashSet<>(asList( //
@@ -68,6 +76,52 @@ class CheckCommand implements Command {
 				.longOpt("deep") //
 				.desc("Check file integrity (Could take a long time).") //
 				.build());
+		OPTIONS.addOption(Option.builder() //
+				.longOpt("incremental") //
+				.hasArg() //
+				.optionalArg(true) //
+				.argName("cacheFile") //
+				.desc("Skip the authentication of encrypted files which did not change since they have been verified by a previous incremental check. " //
+						+ "Remembers verified files in the given cache file, replacing a cache file of another vault. Default: <name of vault>.cache.txt") //
+				.build());
+		OPTIONS.addOption(Option.builder() //
+				.longOpt("maxDamagedChunks") //
+				.hasArg() //
+				.argName("chunks") //
+				.desc("With -deep, stop checking an encrypted file after this many unauthentic chunks. Default: check all chunks") //
+				.build());
+		OPTIONS.addOption(Option.builder() //
+				.longOpt("mmapThreshold") //
+				.hasArg() //
+				.argName("MiB") //
+				.desc("With -deep, memory-map encrypted files larger than this size instead of reading them. Default: never") //
+				.build());
+		OPTIONS.addOption(Option.builder() //
+				.longOpt("profile") //
+				.desc("Print how often each check ran and how much time and I/O it took, slowest first.") //
+				.build());
+		OPTIONS.addOption(Option.builder() //
+				.longOpt("readAhead") //
+				.hasArg() //
+				.argName("ioThreads") //
+				.desc("Without -deep, read file headers ahead on this many threads. Speeds up checks of vaults on network drives. Default: 0") //
+				.build());
+		OPTIONS.addOption(Option.builder() //
+				.longOpt("statsFile") //
+				.hasArg() //
+				.argName("statsFile") //
+				.desc("Write statistics of the check to this JSON file: entries visited, bytes authenticated, problems by type and time spent per rule.") //
+				.build());
+		OPTIONS.addOption(Option.builder() //
+				.longOpt("threads") //
+				.hasArg() //
+				.argName("threads") //
+				.desc("Number of threads used to check the vault. With -deep, chunks of large files are authenticated in parallel, too. Default: 1") //
+				.build());
+		OPTIONS.addOption(Option.builder() //
+				.longOpt("unsorted") //
+				.desc("Write problems to the check output file in the order they are found instead of sorting them by severity.") //
+				.build());
 		OPTIONS.addOption(Option.builder() //
 				.longOpt("output") //
 				.hasArg() //
@@ -83,6 +137,14 @@ class CheckCommand implements Command {
 	private Passphrase passphrase;
 	private Set<String> problemsToSolve;
 	private boolean deep;
+	private int threads;
+	private long mmapThreshold;
+	private long maxDamagedChunks;
+	private int readAheadThreads;
+	private Optional<Path> cacheFile;
+	private Optional<Path> statsFile;
+	private boolean sorted;
+	private boolean profile;
 
 	private Path checkOutputFile;
 	private Path structureOutputFile;
@@ -113,9 +175,105 @@ class CheckCommand implements Command {
 		this.passphrase = passphrase(commandLine);
 		this.problemsToSolve = problemsToSolve(commandLine);
 		this.deep = commandLine.hasOption("deep");
+		this.threads = threads(commandLine);
+		this.mmapThreshold = mmapThreshold(commandLine);
+		this.maxDamagedChunks = maxDamagedChunks(commandLine);
+		this.readAheadThreads = readAheadThreads(commandLine);
+		this.cacheFile = cacheFile(commandLine);
+		this.statsFile = statsFile(commandLine);
+		this.sorted = !commandLine.hasOption("unsorted");
+		this.profile = commandLine.hasOption("profile");
 		setOutputFiles(commandLine);
 	}
 
+	private int threads(CommandLine commandLine) throws ParseException {
+		String value = commandLine.getOptionValue("threads");
+		if (value == null) {
+			return 1;
+		}
+		try {
+			int threads = Integer.parseInt(value);
+			if (threads < 1) {
+				throw new ParseException("threads must be at least 1");
+			}
+			return threads;
+		} catch (NumberFormatException e) {
+			throw new ParseException("Invalid number of threads: " + value);
+		}
+	}
+
+	private int readAheadThreads(CommandLine commandLine) throws ParseException {
+		String value = commandLine.getOptionValue("readAhead");
+		if (value == null) {
+			return 0;
+		}
+		try {
+			int ioThreads = Integer.parseInt(value);
+			if (ioThreads < 0) {
+				throw new ParseException("readAhead must not be negative");
+			}
+			return ioThreads;
+		} catch (NumberFormatException e) {
+			throw new ParseException("Invalid number of read-ahead threads: " + value);
+		}
+	}
+
+	private long mmapThreshold(CommandLine commandLine) throws ParseException {
+		String value = commandLine.getOptionValue("mmapThreshold");
+		if (value == null) {
+			return Long.MAX_VALUE;
+		}
+		try {
+			long mebibytes = Long.parseLong(value);
+			if (mebibytes < 0 || mebibytes > Long.MAX_VALUE >> 20) {
+				throw new ParseException("Invalid mmapThreshold: " + value);
+			}
+			return mebibytes << 20;
+		} catch (NumberFormatException e) {
+			throw new ParseException("Invalid mmapThreshold: " + value);
+		}
+	}
+
+	private long maxDamagedChunks(CommandLine commandLine) throws ParseException {
+		String value = commandLine.getOptionValue("maxDamagedChunks");
+		if (value == null) {
+			return Long.MAX_VALUE;
+		}
+		try {
+			long chunks = Long.parseLong(value);
+			if (chunks < 1) {
+				throw new ParseException("maxDamagedChunks must be at least 1");
+			}
+			return chunks;
+		} catch (NumberFormatException e) {
+			throw new ParseException("Invalid maxDamagedChunks: " + value);
+		}
+	}
+
+	private Optional<Path> cacheFile(CommandLine commandLine) throws ParseException {
+		if (!commandLine.hasOption("incremental")) {
+			return Optional.empty();
+		}
+		String value = commandLine.getOptionValue("incremental", vaultLocation.getFileName() + ".cache.txt");
+		try {
+			return Optional.of(Paths.get(value));
+		} catch (InvalidPathException e) {
+			throw new ParseException("Invalid cache file");
+		}
+	}
+
+	private Optional<Path> statsFile(CommandLine commandLine) throws ParseException {
+		String value = commandLine.getOptionValue("statsFile");
+		if (value == null) {
+			return Optional.empty();
+		}
+		try {
+			return Optional.of(Paths.get(value));
+		} catch (InvalidPathException e) {
+			throw new ParseException("Invalid stats file");
+		}
+	}
+
 	private Set<String> problemsToSolve(CommandLine commandLine) throws ParseException {
 		String[] values = commandLine.getOptionValues("solve");
 		if (values == null) {
@@ -219,6 +377,53 @@ class CheckCommand implements Command {
 		return deep;
 	}
 
+	public int threads() {
+		return threads;
+	}
+
+	/**
+	 * @return size in bytes above which encrypted files are memory-mapped, {@link Long#MAX_VALUE} if files should never be mapped
+	 */
+	public long mmapThreshold() {
+		return mmapThreshold;
+	}
+
+	/**
+	 * @return number of unauthentic chunks after which checking an encrypted file stops, {@link Long#MAX_VALUE} if all chunks should be checked
+	 */
+	public long maxDamagedChunks() {
+		return maxDamagedChunks;
+	}
+
+	/**
+	 * @return number of threads reading file headers ahead, 0 if headers should be read when a file is checked
+	 */
+	public int readAheadThreads() {
+		return readAheadThreads;
+	}
+
+	/**
+	 * @return the cache file of an incremental check, empty if all files should be checked
+	 */
+	public Optional<Path> cacheFile() {
+		return cacheFile;
+	}
+
+	/**
+	 * @return the file to write check statistics to, empty if no statistics should be written
+	 */
+	public Optional<Path> statsFile() {
+		return statsFile;
+	}
+
+	public boolean isSorted() {
+		return sorted;
+	}
+
+	public boolean isProfiled() {
+		return profile;
+	}
+
 	public Path checkOutputFile() {
 		return checkOutputFile;
 	}
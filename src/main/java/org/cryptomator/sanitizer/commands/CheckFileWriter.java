@@ -0,0 +1,207 @@
+package org.cryptomator.sanitizer.commands;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.createTempFile;
+import static java.nio.file.Files.deleteIfExists;
+import static java.nio.file.Files.newBufferedWriter;
+import static java.nio.file.Files.newInputStream;
+import static java.nio.file.Files.newOutputStream;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.cryptomator.sanitizer.integrity.problems.Severity.INFO;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.cryptomator.sanitizer.integrity.problems.Problem;
+import org.cryptomator.sanitizer.integrity.problems.ProblemSink;
+import org.cryptomator.sanitizer.integrity.problems.Severity;
+
+/**
+ * Streams problems to the check output file as they are found.
+ * <p>
+ * The first line of the file contains the number of problems, so problems are spilled to temporary run files next to the output file first. If sorting is enabled, each
+ * run is sorted before it is spilled and all runs are merged by {@link #finish()}. Only one run is held in memory at a time.
+ */
+class CheckFileWriter implements ProblemSink, AutoCloseable {
+
+	private static final int MAX_RUN_LENGTH = 50_000;
+	private static final Comparator<Line> BY_SEVERITY_AND_TEXT = Comparator.<Line>comparingInt(line -> line.severity.ordinal()).thenComparing(line -> line.text);
+
+	private final Path outputFile;
+	private final boolean sorted;
+	private final List<Path> runs = new ArrayList<>();
+	private final List<Line> currentRun = new ArrayList<>();
+	private long numProblems;
+
+	public CheckFileWriter(Path outputFile, boolean sorted) {
+		this.outputFile = outputFile;
+		this.sorted = sorted;
+	}
+
+	@Override
+	public void report(Problem problem) {
+		Line line = new Line(problem.severity(), problem.toString());
+		synchronized (this) {
+			if (line.severity != INFO) {
+				numProblems++;
+			}
+			currentRun.add(line);
+			if (currentRun.size() >= MAX_RUN_LENGTH) {
+				spillCurrentRun();
+			}
+		}
+	}
+
+	public synchronized void finish() {
+		try (PrintWriter writer = new PrintWriter(newBufferedWriter(outputFile, UTF_8, CREATE_NEW, WRITE))) {
+			writer.println(numProblems + " problem(s) found.");
+			if (runs.isEmpty()) {
+				sortIfRequired(currentRun);
+				currentRun.forEach(line -> line.writeTo(writer));
+			} else {
+				spillCurrentRun();
+				mergeRunsTo(writer);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Deletes all temporary run files. Does not write the output file unless {@link #finish()} has been called before.
+	 */
+	@Override
+	public synchronized void close() {
+		for (Path run : runs) {
+			try {
+				deleteIfExists(run);
+			} catch (IOException e) {
+				// best effort, temporary file
+			}
+		}
+		runs.clear();
+	}
+
+	private void spillCurrentRun() {
+		if (currentRun.isEmpty()) {
+			return;
+		}
+		sortIfRequired(currentRun);
+		try {
+			Path run = createTempFile(outputFile.toAbsolutePath().getParent(), outputFile.getFileName().toString(), ".run");
+			runs.add(run);
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(newOutputStream(run, WRITE)))) {
+				for (Line line : currentRun) {
+					line.writeTo(out);
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		currentRun.clear();
+	}
+
+	private void sortIfRequired(List<Line> lines) {
+		if (sorted) {
+			lines.sort(BY_SEVERITY_AND_TEXT);
+		}
+	}
+
+	private void mergeRunsTo(PrintWriter writer) throws IOException {
+		List<RunReader> readers = new ArrayList<>();
+		try {
+			for (Path run : runs) {
+				readers.add(new RunReader(run));
+			}
+			if (sorted) {
+				PriorityQueue<RunReader> queue = new PriorityQueue<>(Comparator.comparing(reader -> reader.current, BY_SEVERITY_AND_TEXT));
+				for (RunReader reader : readers) {
+					if (reader.advance()) {
+						queue.add(reader);
+					}
+				}
+				while (!queue.isEmpty()) {
+					RunReader reader = queue.poll();
+					reader.current.writeTo(writer);
+					if (reader.advance()) {
+						queue.add(reader);
+					}
+				}
+			} else {
+				for (RunReader reader : readers) {
+					while (reader.advance()) {
+						reader.current.writeTo(writer);
+					}
+				}
+			}
+		} finally {
+			for (RunReader reader : readers) {
+				reader.in.close();
+			}
+		}
+	}
+
+	private static class Line {
+
+		private final Severity severity;
+		private final String text;
+
+		public Line(Severity severity, String text) {
+			this.severity = severity;
+			this.text = text;
+		}
+
+		public void writeTo(PrintWriter writer) {
+			writer.print(format("%-5s", severity));
+			writer.print(' ');
+			writer.println(text);
+		}
+
+		public void writeTo(DataOutputStream out) throws IOException {
+			byte[] bytes = text.getBytes(UTF_8);
+			out.writeByte(severity.ordinal());
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+
+	}
+
+	private static class RunReader {
+
+		private final DataInputStream in;
+		private Line current;
+
+		public RunReader(Path run) throws IOException {
+			this.in = new DataInputStream(new BufferedInputStream(newInputStream(run)));
+		}
+
+		public boolean advance() throws IOException {
+			int severity;
+			try {
+				severity = in.readUnsignedByte();
+			} catch (EOFException e) {
+				current = null;
+				return false;
+			}
+			byte[] bytes = new byte[in.readInt()];
+			in.readFully(bytes);
+			current = new Line(Severity.values()[severity], new String(bytes, UTF_8));
+			return true;
+		}
+
+	}
+
+}
@@ -0,0 +1,55 @@
+package org.cryptomator.sanitizer.commands;
+
+import static java.lang.String.format;
+import static org.cryptomator.sanitizer.Sanitizer.print;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.cryptomator.sanitizer.integrity.CheckMetrics;
+import org.cryptomator.sanitizer.utils.ByteSizes;
+
+/**
+ * Periodically prints the progress of a running check to the console until closed.
+ */
+class CheckProgressReporter implements AutoCloseable {
+
+	private static final long INTERVAL_SECONDS = 10;
+
+	private final CheckMetrics metrics;
+	private final LongSupplier problemsFound;
+	private final ScheduledExecutorService scheduler;
+
+	public CheckProgressReporter(CheckMetrics metrics, LongSupplier problemsFound) {
+		this.metrics = metrics;
+		this.problemsFound = problemsFound;
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "check-progress");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleAtFixedRate(this::report, INTERVAL_SECONDS, INTERVAL_SECONDS, TimeUnit.SECONDS);
+	}
+
+	private void report() {
+		long visited = metrics.entriesVisited();
+		long total = Math.max(1, metrics.totalEntries());
+		String remaining = metrics.estimatedTimeRemaining().map(eta -> ", about " + formatDuration(eta) + " remaining").orElse("");
+		print(format("Checked %d of %d entries (%d%%), %s authenticated, %d problem(s) so far%s", //
+				visited, metrics.totalEntries(), Math.min(100, visited * 100 / total), ByteSizes.format(metrics.bytesAuthenticated()), problemsFound.getAsLong(), remaining));
+	}
+
+	@Override
+	public void close() {
+		scheduler.shutdownNow();
+	}
+
+	private static String formatDuration(Duration duration) {
+		long seconds = duration.getSeconds();
+		return format("%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+	}
+
+}
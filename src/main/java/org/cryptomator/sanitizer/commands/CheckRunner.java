@@ -6,11 +6,10 @@ import static java.nio.file.Files.isDirectory;
 import static java.nio.file.Files.isRegularFile;
 import static java.nio.file.Files.newBufferedWriter;
 import static java.nio.file.Files.size;
-import static java.nio.file.Files.walk;
 import static java.nio.file.StandardOpenOption.CREATE_NEW;
 import static java.nio.file.StandardOpenOption.WRITE;
-import static java.util.Collections.sort;
-import static java.util.stream.Collectors.toList;
+import static java.util.Arrays.stream;
+import static java.util.Collections.synchronizedList;
 import static org.cryptomator.sanitizer.Sanitizer.print;
 import static org.cryptomator.sanitizer.Sanitizer.printNoNewline;
 import static org.cryptomator.sanitizer.integrity.problems.Severity.INFO;
@@ -21,24 +20,29 @@ import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 import org.cryptomator.sanitizer.CryptorHolder;
 import org.cryptomator.sanitizer.Passphrase;
+import org.cryptomator.sanitizer.VaultIndex;
 import org.cryptomator.sanitizer.integrity.AbortCheckException;
+import org.cryptomator.sanitizer.integrity.CheckCache;
+import org.cryptomator.sanitizer.integrity.CheckMetrics;
 import org.cryptomator.sanitizer.integrity.IntegrityCheck;
+import org.cryptomator.sanitizer.integrity.checks.CheckProfiler;
+import org.cryptomator.sanitizer.integrity.checks.CheckProfiler.CheckProfile;
 import org.cryptomator.sanitizer.integrity.problems.Problem;
+import org.cryptomator.sanitizer.integrity.problems.ProblemSink;
 import org.cryptomator.sanitizer.integrity.problems.Severity;
 import org.cryptomator.sanitizer.integrity.problems.SolutionContext;
+import org.cryptomator.sanitizer.utils.ByteSizes;
 import org.cryptomator.sanitizer.utils.Counter;
 
 class CheckRunner implements Runnable {
 
-	private static final long KIBI = 1024;
-	private static final String[] KIBI_POWERS = {"B", "KiB", "MiB", "GiB", "TiB", "PiB", "EiB", "ZiB", "YiB"};
-
 	private final CheckCommand args;
 
 	public CheckRunner(CheckCommand args) {
@@ -49,18 +53,43 @@ class CheckRunner implements Runnable {
 	public void run() {
 		try (CryptorHolder cryptorHolder = new CryptorHolder(); //
 				Passphrase passphrase = args.passphrase()) {
-			IntegrityCheck integrityCheck = new IntegrityCheck(cryptorHolder);
+			CheckMetrics metrics = new CheckMetrics();
+			IntegrityCheck integrityCheck = new IntegrityCheck(cryptorHolder) //
+					.withThreads(args.threads()) //
+					.withMmapThreshold(args.mmapThreshold()) //
+					.withMaxDamagedChunks(args.maxDamagedChunks()) //
+					.withHeaderReadAhead(args.readAheadThreads()) //
+					.withMetrics(metrics);
+			Optional<CheckCache> cache = args.cacheFile().map(cacheFile -> loadCache(cacheFile, args.vaultLocation()));
+			cache.ifPresent(integrityCheck::withCache);
+			Optional<CheckProfiler> profiler = args.isProfiled() ? Optional.of(new CheckProfiler()) : Optional.empty();
+			profiler.ifPresent(integrityCheck::withProfiler);
 			print("Scanning vault structure may take some time. Be patient...");
 
-			writeStructureToOutput(args, args.vaultLocation());
+			VaultIndex index = scanVault(args.vaultLocation());
+			writeStructureToOutput(args, index);
 
 			print("Checking the vault may take some time. Be patient...");
 			print();
 
-			Set<Problem> problems = integrityCheck.check(args.vaultLocation(), passphrase, args.isDeep());
-			writeResultsToConsole(args, problems);
-			writeProblemsToOutput(args, problems);
-			maybeSolveProblems(args, cryptorHolder, problems);
+			ProblemCounter counter = new ProblemCounter();
+			List<Problem> problemsToSolve = synchronizedList(new ArrayList<>());
+			CheckProgressReporter progress = new CheckProgressReporter(metrics, counter::countProblems);
+			try (CheckFileWriter checkFileWriter = new CheckFileWriter(args.checkOutputFile(), args.isSorted())) {
+				integrityCheck.check(index, passphrase, args.isDeep(), checkFileWriter //
+						.andThen(counter) //
+						.andThen(collectProblemsToSolve(args, problemsToSolve)));
+				checkFileWriter.finish();
+			} finally {
+				progress.close();
+			}
+			if (cryptorHolder.optionalCryptor().isPresent()) {
+				cache.ifPresent(this::saveCache);
+			}
+			args.statsFile().ifPresent(statsFile -> writeStats(metrics, statsFile));
+			profiler.ifPresent(this::writeProfileToConsole);
+			writeResultsToConsole(args, counter);
+			maybeSolveProblems(args, cryptorHolder, problemsToSolve);
 
 			print();
 			print("Done.");
@@ -70,11 +99,58 @@ class CheckRunner implements Runnable {
 		}
 	}
 
-	private void maybeSolveProblems(CheckCommand args, CryptorHolder cryptorHolder, Set<Problem> problems) {
+	private CheckCache loadCache(Path cacheFile, Path vaultLocation) {
+		try {
+			return CheckCache.load(cacheFile, vaultLocation);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void saveCache(CheckCache cache) {
+		try {
+			cache.save();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		print("Updated " + args.cacheFile().get() + ".");
+		print();
+	}
+
+	private void writeStats(CheckMetrics metrics, Path statsFile) {
+		try {
+			metrics.writeJsonTo(statsFile);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		print("Wrote statistics to " + statsFile + ".");
+		print();
+	}
+
+	private void writeProfileToConsole(CheckProfiler profiler) {
+		print("Time spent per check, slowest first:");
+		print(format("%-36s %12s %12s %12s %16s", "check", "calls", "wall ms", "cpu ms", "bytes read"));
+		for (CheckProfile profile : profiler.slowestFirst()) {
+			print(format("%-36s %12d %12d %12s %16d", //
+					profile.name(), //
+					profile.invocations(), //
+					profile.wallNanos() / 1_000_000, //
+					profiler.cpuTimeMeasured() ? Long.toString(profile.cpuNanos() / 1_000_000) : "n/a", //
+					profile.bytesRead()));
+		}
+		print();
+	}
+
+	private ProblemSink collectProblemsToSolve(CheckCommand args, List<Problem> problemsToSolve) {
+		return problem -> {
+			if (args.problemsToSolve().contains(problem.name())) {
+				problemsToSolve.add(problem);
+			}
+		};
+	}
+
+	private void maybeSolveProblems(CheckCommand args, CryptorHolder cryptorHolder, List<Problem> problemsToSolve) {
 		if (cryptorHolder.optionalCryptor().isPresent()) {
-			List<Problem> problemsToSolve = problems.stream() //
-					.filter(problem -> args.problemsToSolve().contains(problem.name())) //
-					.collect(toList());
 			if (!problemsToSolve.isEmpty()) {
 				print();
 				print("Solving problems. This may take some time. Be patient...");
@@ -85,11 +161,19 @@ class CheckRunner implements Runnable {
 		}
 	}
 
-	private void writeStructureToOutput(CheckCommand args, Path vaultLocation) {
+	private VaultIndex scanVault(Path vaultLocation) {
+		try {
+			return VaultIndex.scan(vaultLocation);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void writeStructureToOutput(CheckCommand args, VaultIndex index) {
 		Counter counter = new Counter();
 		try (PrintWriter writer = new PrintWriter(newBufferedWriter(args.structureOutputFile(), UTF_8, CREATE_NEW, WRITE)); //
-				Stream<Path> vaultContents = walk(vaultLocation)) {
-			vaultContents.forEach(writePathToOutput(args, writer) //
+				Stream<VaultIndex.Entry> vaultContents = index.walk()) {
+			vaultContents.forEach(writeEntryToOutput(args, writer) //
 					.andThen(ignored -> counter.increment()));
 		} catch (IOException e) {
 			throw new UncheckedIOException(e);
@@ -99,14 +183,17 @@ class CheckRunner implements Runnable {
 		print();
 	}
 
-	private Consumer<Path> writePathToOutput(CheckCommand args, PrintWriter writer) {
-		return path -> {
+	private Consumer<VaultIndex.Entry> writeEntryToOutput(CheckCommand args, PrintWriter writer) {
+		return entry -> {
 			try {
+				Path path = entry.path();
 				Path relativePath = args.vaultLocation().relativize(path);
-				if (isDirectory(path)) {
+				if (entry.attributes().isSymbolicLink()) {
+					writeFollowedLinkToOutput(writer, path, relativePath);
+				} else if (entry.isDirectory()) {
 					writer.println(format("d %s", relativePath));
-				} else if (isRegularFile(path)) {
-					writer.println(format("f %s %s", relativePath, obfuscateSize(size(path))));
+				} else if (entry.isRegularFile()) {
+					writer.println(format("f %s %s", relativePath, ByteSizes.obfuscate(entry.size())));
 				} else {
 					writer.println(format("? %s", relativePath));
 				}
@@ -116,55 +203,48 @@ class CheckRunner implements Runnable {
 		};
 	}
 
-	private String obfuscateSize(long size) {
-		int i = 0;
-		while (i < 8 && size > KIBI) {
-			size = size / KIBI;
-			i++;
-		}
-		if (i == 0) {
-			return size + " " + KIBI_POWERS[i];
+	private void writeFollowedLinkToOutput(PrintWriter writer, Path path, Path relativePath) throws IOException {
+		if (isDirectory(path)) {
+			writer.println(format("d %s", relativePath));
+		} else if (isRegularFile(path)) {
+			writer.println(format("f %s %s", relativePath, ByteSizes.obfuscate(size(path))));
 		} else {
-			return "~" + size + " " + KIBI_POWERS[i];
+			writer.println(format("? %s", relativePath));
 		}
 	}
 
-	private void writeResultsToConsole(CheckCommand args, Set<Problem> problems) {
-		print("Found " + countProblems(problems) + " problem(s):");
+	private void writeResultsToConsole(CheckCommand args, ProblemCounter counter) {
+		print("Found " + counter.countProblems() + " problem(s):");
 		for (Severity severity : Severity.values()) {
-			print("* " + problems.stream().filter(problem -> problem.severity() == severity).count() + " " + severity);
+			print("* " + counter.count(severity) + " " + severity);
 		}
 		print();
 		print("See " + args.checkOutputFile() + " for details.");
 	}
 
-	private void writeProblemsToOutput(CheckCommand args, Set<Problem> problems) {
-		try (PrintWriter writer = new PrintWriter(newBufferedWriter(args.checkOutputFile(), UTF_8, CREATE_NEW, WRITE))) {
-			writer.println(countProblems(problems) + " problem(s) found.");
-			if (problems.isEmpty()) {
-				return;
+	private static class ProblemCounter implements ProblemSink {
+
+		private final LongAdder[] countsBySeverity = new LongAdder[Severity.values().length];
+
+		public ProblemCounter() {
+			for (int i = 0; i < countsBySeverity.length; i++) {
+				countsBySeverity[i] = new LongAdder();
 			}
-			List<Problem> sortedProblems = new ArrayList<>(problems);
-			sort(sortedProblems, (p1, p2) -> {
-				int bySeverity = p1.severity().ordinal() - p2.severity().ordinal();
-				if (bySeverity == 0) {
-					return p1.toString().compareTo(p2.toString());
-				} else {
-					return bySeverity;
-				}
-			});
-			sortedProblems.forEach(problem -> {
-				writer.print(format("%-5s", problem.severity()));
-				writer.print(' ');
-				writer.println(problem);
-			});
-		} catch (IOException e) {
-			throw new UncheckedIOException(e);
 		}
-	}
 
-	private long countProblems(Set<Problem> problems) {
-		return problems.stream().filter(problem -> problem.severity() != INFO).count();
+		@Override
+		public void report(Problem problem) {
+			countsBySeverity[problem.severity().ordinal()].increment();
+		}
+
+		public long count(Severity severity) {
+			return countsBySeverity[severity.ordinal()].sum();
+		}
+
+		public long countProblems() {
+			return stream(Severity.values()).filter(severity -> severity != INFO).mapToLong(this::count).sum();
+		}
+
 	}
 
 }
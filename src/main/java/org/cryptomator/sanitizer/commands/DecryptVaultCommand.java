@@ -36,7 +36,8 @@ public class DecryptVaultCommand implements Command {
 	private static final String USAGE = "" //
 			+ "-vault vaultPath" //
 			+ " -target targetPath" //
-			+ " [-passphraseFile passphraseFile]";
+			+ " [-passphraseFile passphraseFile]" //
+			+ " [-threads threads]";
 	private static final String HEADER = "\nDecrypts all data from a vault and tries to restore inaccessible data.\n";
 	private static final Options OPTIONS = new Options();
 	static {
@@ -66,11 +67,18 @@ public class DecryptVaultCommand implements Command {
 				.argName("passphraseFile") //
 				.desc("A file to read the password from. Omit this and you will be promted for the passphrase.") //
 				.build());
+		OPTIONS.addOption(Option.builder() //
+				.longOpt("threads") //
+				.hasArg() //
+				.argName("threads") //
+				.desc("Number of threads used to decrypt file contents. Directories are still created one after another. Default: 1") //
+				.build());
 	}
 
 	private Path vaultLocation;
 	private Path targetLocation;
 	private Passphrase passphrase;
+	private int threads;
 
 	@Override
 	public String commandLineValue() {
@@ -97,6 +105,23 @@ public class DecryptVaultCommand implements Command {
 		this.vaultLocation = vaultLocation(commandLine);
 		this.targetLocation = targetLocation(commandLine);
 		this.passphrase = passphrase(commandLine);
+		this.threads = threads(commandLine);
+	}
+
+	private int threads(CommandLine commandLine) throws ParseException {
+		String value = commandLine.getOptionValue("threads");
+		if (value == null) {
+			return 1;
+		}
+		try {
+			int threads = Integer.parseInt(value);
+			if (threads < 1) {
+				throw new ParseException("threads must be at least 1");
+			}
+			return threads;
+		} catch (NumberFormatException e) {
+			throw new ParseException("Invalid number of threads: " + value);
+		}
 	}
 
 	private Passphrase passphrase(CommandLine commandLine) throws ParseException {
@@ -155,6 +180,10 @@ public class DecryptVaultCommand implements Command {
 		return targetLocation;
 	}
 
+	public int threads() {
+		return threads;
+	}
+
 	public Optional<Passphrase> passphraseIfRead() {
 		return Optional.ofNullable(passphrase);
 	}
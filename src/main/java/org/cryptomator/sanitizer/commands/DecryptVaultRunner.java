@@ -18,7 +18,7 @@ class DecryptVaultRunner implements Runnable {
 	@Override
 	public void run() {
 		try (Passphrase passphrase = args.passphrase()) {
-			new VaultDecryptor(args.vaultLocation(), args.targetLocation(), passphrase).run();
+			new VaultDecryptor(args.vaultLocation(), args.targetLocation(), passphrase).withThreads(args.threads()).run();
 		} catch (InvalidPassphraseException e) {
 			System.err.println("Invalid passphrase.");
 		} catch (AbortCheckException e) {
@@ -37,7 +37,8 @@ public class EncryptPathCommand implements Command {
 			+ " [-passphraseFile passphraseFile]"
 			+ " [-cleartextPath cleartextPath]"
 			+ " [-cleartextListFile cleartextListFile]"
-			+ " [-outputPath outputPath]";
+			+ " [-outputPath outputPath]"
+			+ " [-threads threads]";
 	private static final String HEADER = "\nEncrypt cleartext paths for a Cryptomator vault.\n";
 	private static final Options OPTIONS = new Options();
 
@@ -79,12 +80,19 @@ public class EncryptPathCommand implements Command {
 				.argName("outputPath")
 				.desc("Path of the output file. Supported extensions: txt, csv")
 				.build());
+		OPTIONS.addOption(Option.builder() //
+				.longOpt("threads") //
+				.hasArg() //
+				.argName("threads") //
+				.desc("Number of threads used to encrypt the paths of a cleartextListFile. Default: 1") //
+				.build());
 	}
 
 	private Path vaultLocation;
 	private Passphrase passphrase;
 	private List<String> cleartextList;
 	private String outputPath;
+	private int threads;
 
 	@Override
 	public String commandLineValue() {
@@ -112,6 +120,23 @@ public class EncryptPathCommand implements Command {
 		this.passphrase = passphrase(commandLine);
 		this.cleartextList = this.cleartextList(commandLine);
 		this.outputPath = outputPath(commandLine);
+		this.threads = threads(commandLine);
+	}
+
+	private int threads(CommandLine commandLine) throws ParseException {
+		String value = commandLine.getOptionValue("threads");
+		if (value == null) {
+			return 1;
+		}
+		try {
+			int threads = Integer.parseInt(value);
+			if (threads < 1) {
+				throw new ParseException("threads must be at least 1");
+			}
+			return threads;
+		} catch (NumberFormatException e) {
+			throw new ParseException("Invalid number of threads: " + value);
+		}
 	}
 
 	private Passphrase passphrase(CommandLine commandLine) throws ParseException {
@@ -185,6 +210,10 @@ public class EncryptPathCommand implements Command {
 		return outputPath;
 	}
 
+	public int threads() {
+		return threads;
+	}
+
 	private Passphrase readPassphrase() throws AbortCheckException {
 		Console console = System.console();
 		if (console == null) {
@@ -0,0 +1,161 @@
+package org.cryptomator.sanitizer.integrity;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers which encrypted files have been verified by a previous check run.
+ * <p>
+ * A file counts as unchanged if size, modification time and file key (the inode on most platforms) are the same as when it was verified. Entries of files which are not
+ * looked up again during a run are dropped when the cache is {@link #save() saved}. The cache file records the real path of the vault it belongs to, so a cache file of
+ * another vault is ignored and replaced. Thread-safe.
+ */
+public class CheckCache {
+
+	private static final String FORMAT_LINE = "# sanitizer check cache v2";
+	private static final String VAULT_LINE_PREFIX = "# vault ";
+	private static final String NO_FILE_KEY = "-";
+
+	private final Path cacheFile;
+	private final Path vaultLocation;
+	private final String vaultLine;
+	private final Map<String, Entry> previousRun;
+	private final Map<String, Entry> currentRun = new ConcurrentHashMap<>();
+
+	private CheckCache(Path cacheFile, Path vaultLocation, String vaultLine, Map<String, Entry> previousRun) {
+		this.cacheFile = cacheFile;
+		this.vaultLocation = vaultLocation;
+		this.vaultLine = vaultLine;
+		this.previousRun = previousRun;
+	}
+
+	/**
+	 * Reads the cache file. A missing cache file, one in an unknown format or one written for another vault results in an empty cache.
+	 */
+	public static CheckCache load(Path cacheFile, Path vaultLocation) throws IOException {
+		String vaultLine = VAULT_LINE_PREFIX + vaultLocation.toRealPath();
+		Map<String, Entry> entries = new ConcurrentHashMap<>();
+		try (BufferedReader reader = Files.newBufferedReader(cacheFile, UTF_8)) {
+			if (FORMAT_LINE.equals(reader.readLine()) && vaultLine.equals(reader.readLine())) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					String[] fields = line.split("\t", 5);
+					if (fields.length == 5) {
+						entries.put(fields[4], new Entry(Status.valueOf(fields[0]), Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[3]));
+					}
+				}
+			}
+		} catch (NoSuchFileException e) {
+			// first run
+		} catch (IllegalArgumentException e) {
+			entries.clear();
+		}
+		return new CheckCache(cacheFile, vaultLocation, vaultLine, entries);
+	}
+
+	/**
+	 * @return <code>true</code> if the file did not change since it has been verified with at least the given depth
+	 */
+	public boolean isUnchangedAndVerified(Path file, BasicFileAttributes attributes, boolean deep) {
+		String key = key(file);
+		Entry entry = previousRun.get(key);
+		if (entry != null && entry.matches(attributes) && entry.status.covers(deep)) {
+			currentRun.merge(key, entry, Entry::deeper);
+			return true;
+		} else {
+			return false;
+		}
+	}
+
+	/**
+	 * @param attributes Attributes read before the file has been verified
+	 */
+	public void markVerified(Path file, BasicFileAttributes attributes, boolean deep) {
+		currentRun.merge(key(file), new Entry(deep ? Status.DEEP : Status.HEADER, attributes), Entry::deeper);
+	}
+
+	/**
+	 * Atomically replaces the cache file with the files verified or found unchanged during this run.
+	 */
+	public void save() throws IOException {
+		Path directory = cacheFile.toAbsolutePath().getParent();
+		Path tmpFile = Files.createTempFile(directory, cacheFile.getFileName().toString(), ".tmp");
+		try {
+			try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(tmpFile, UTF_8))) {
+				writer.println(FORMAT_LINE);
+				writer.println(vaultLine);
+				currentRun.forEach((key, entry) -> {
+					writer.println(entry.status + "\t" + entry.size + "\t" + entry.lastModified + "\t" + entry.fileKey + "\t" + key);
+				});
+			}
+			try {
+				Files.move(tmpFile, cacheFile, REPLACE_EXISTING, ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmpFile, cacheFile, REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(tmpFile);
+		}
+	}
+
+	private String key(Path file) {
+		return vaultLocation.relativize(file).toString().replace(File.separatorChar, '/');
+	}
+
+	private enum Status {
+		HEADER, DEEP;
+
+		boolean covers(boolean deep) {
+			return this == DEEP || !deep;
+		}
+	}
+
+	private static class Entry {
+
+		private final Status status;
+		private final long size;
+		private final long lastModified;
+		private final String fileKey;
+
+		public Entry(Status status, BasicFileAttributes attributes) {
+			this(status, attributes.size(), attributes.lastModifiedTime().toMillis(), fileKey(attributes));
+		}
+
+		public Entry(Status status, long size, long lastModified, String fileKey) {
+			this.status = status;
+			this.size = size;
+			this.lastModified = lastModified;
+			this.fileKey = fileKey;
+		}
+
+		public boolean matches(BasicFileAttributes attributes) {
+			return size == attributes.size() //
+					&& lastModified == attributes.lastModifiedTime().toMillis() //
+					&& fileKey.equals(fileKey(attributes));
+		}
+
+		public Entry deeper(Entry other) {
+			return other.status.compareTo(status) > 0 ? other : this;
+		}
+
+		private static String fileKey(BasicFileAttributes attributes) {
+			return Objects.toString(attributes.fileKey(), NO_FILE_KEY).replace('\t', ' ');
+		}
+
+	}
+
+}
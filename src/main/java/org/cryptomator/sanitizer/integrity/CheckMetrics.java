@@ -0,0 +1,182 @@
+package org.cryptomator.sanitizer.integrity;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.cryptomator.sanitizer.integrity.problems.Problem;
+import org.cryptomator.sanitizer.integrity.problems.ProblemSink;
+
+/**
+ * Counts what a check run did so far: entries visited, bytes authenticated, problems by type and the time spent in each rule of the vault format.
+ * <p>
+ * Rules are named after the name patterns on their path from the vault root, e.g. <code>d/[A-Z2-7]{2}</code>. The time of a rule is the wall-clock time spent checking
+ * entries matched by it, including the time of nested rules. Thread-safe.
+ */
+public class CheckMetrics implements ProblemSink {
+
+	private final LongAdder directoriesVisited = new LongAdder();
+	private final LongAdder filesVisited = new LongAdder();
+	private final LongAdder bytesAuthenticated = new LongAdder();
+	private final Map<String, LongAdder> problemsByType = new ConcurrentHashMap<>();
+	private final Map<String, RuleMetrics> rules = new ConcurrentHashMap<>();
+	private volatile long totalEntries;
+	private volatile long startNanos;
+	private volatile long endNanos;
+
+	/**
+	 * @param totalEntries Number of entries expected to be visited, used to estimate the remaining time
+	 */
+	void start(long totalEntries) {
+		this.totalEntries = totalEntries;
+		this.startNanos = System.nanoTime();
+		this.endNanos = 0;
+	}
+
+	void finish() {
+		this.endNanos = System.nanoTime();
+	}
+
+	public void visitedDirectory() {
+		directoriesVisited.increment();
+	}
+
+	public void visitedFile() {
+		filesVisited.increment();
+	}
+
+	public void authenticated(long bytes) {
+		bytesAuthenticated.add(bytes);
+	}
+
+	public void ruleApplied(String rule, long nanos) {
+		rules.computeIfAbsent(rule, ignored -> new RuleMetrics()).add(nanos);
+	}
+
+	@Override
+	public void report(Problem problem) {
+		problemsByType.computeIfAbsent(type(problem), ignored -> new LongAdder()).increment();
+	}
+
+	public long totalEntries() {
+		return totalEntries;
+	}
+
+	public long entriesVisited() {
+		return directoriesVisited() + filesVisited();
+	}
+
+	public long directoriesVisited() {
+		return directoriesVisited.sum();
+	}
+
+	public long filesVisited() {
+		return filesVisited.sum();
+	}
+
+	public long bytesAuthenticated() {
+		return bytesAuthenticated.sum();
+	}
+
+	public Map<String, Long> problemsByType() {
+		Map<String, Long> result = new TreeMap<>();
+		problemsByType.forEach((type, count) -> result.put(type, count.sum()));
+		return result;
+	}
+
+	public Duration elapsed() {
+		long end = endNanos != 0 ? endNanos : System.nanoTime();
+		return Duration.ofNanos(end - startNanos);
+	}
+
+	/**
+	 * @return the remaining time, extrapolated from the entries visited so far. Empty until the first entry has been visited.
+	 */
+	public Optional<Duration> estimatedTimeRemaining() {
+		long visited = entriesVisited();
+		if (visited == 0) {
+			return Optional.empty();
+		}
+		long remaining = Math.max(0, totalEntries - visited);
+		return Optional.of(elapsed().multipliedBy(remaining).dividedBy(visited));
+	}
+
+	public void writeJsonTo(Path file) throws IOException {
+		List<Map.Entry<String, RuleMetrics>> rulesBySlowest = rules.entrySet().stream() //
+				.sorted(Map.Entry.<String, RuleMetrics>comparingByValue().reversed()) //
+				.collect(toList());
+		try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file, UTF_8))) {
+			writer.println("{");
+			writer.println("  \"durationMillis\": " + elapsed().toMillis() + ",");
+			writer.println("  \"totalEntries\": " + totalEntries + ",");
+			writer.println("  \"directoriesVisited\": " + directoriesVisited() + ",");
+			writer.println("  \"filesVisited\": " + filesVisited() + ",");
+			writer.println("  \"bytesAuthenticated\": " + bytesAuthenticated() + ",");
+			writer.print("  \"problemsByType\": {");
+			String separator = "\n";
+			for (Map.Entry<String, Long> problemType : problemsByType().entrySet()) {
+				writer.print(separator + "    " + json(problemType.getKey()) + ": " + problemType.getValue());
+				separator = ",\n";
+			}
+			writer.println(problemsByType.isEmpty() ? "}," : "\n  },");
+			writer.print("  \"rules\": [");
+			separator = "\n";
+			for (Map.Entry<String, RuleMetrics> rule : rulesBySlowest) {
+				writer.print(separator + "    {\"rule\": " + json(rule.getKey()) //
+						+ ", \"entries\": " + rule.getValue().entries.sum() //
+						+ ", \"millis\": " + rule.getValue().nanos.sum() / 1_000_000 + "}");
+				separator = ",\n";
+			}
+			writer.println(rulesBySlowest.isEmpty() ? "]" : "\n  ]");
+			writer.println("}");
+		}
+	}
+
+	private static String type(Problem problem) {
+		String name = problem.getClass().getSimpleName();
+		return name.endsWith("Problem") ? name.substring(0, name.length() - "Problem".length()) : name;
+	}
+
+	private static String json(String value) {
+		StringBuilder result = new StringBuilder("\"");
+		for (char c : value.toCharArray()) {
+			if (c == '"' || c == '\\') {
+				result.append('\\').append(c);
+			} else if (c < 0x20) {
+				result.append(String.format("\\u%04x", (int) c));
+			} else {
+				result.append(c);
+			}
+		}
+		return result.append('"').toString();
+	}
+
+	private static class RuleMetrics implements Comparable<RuleMetrics> {
+
+		private final LongAdder entries = new LongAdder();
+		private final LongAdder nanos = new LongAdder();
+
+		public void add(long nanos) {
+			this.entries.increment();
+			this.nanos.add(nanos);
+		}
+
+		@Override
+		public int compareTo(RuleMetrics other) {
+			return Long.compare(nanos.sum(), other.nanos.sum());
+		}
+
+	}
+
+}
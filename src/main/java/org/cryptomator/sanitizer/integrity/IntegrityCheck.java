@@ -2,111 +2,264 @@ package org.cryptomator.sanitizer.integrity;
 
 import org.cryptomator.cryptolib.api.Cryptor;
 import org.cryptomator.sanitizer.CryptorHolder;
+import org.cryptomator.sanitizer.MetadataFileCache;
+import org.cryptomator.sanitizer.VaultIndex;
+import org.cryptomator.sanitizer.integrity.checks.AuthenticationOptions;
 import org.cryptomator.sanitizer.integrity.checks.Check;
+import org.cryptomator.sanitizer.integrity.checks.CheckProfiler;
 import org.cryptomator.sanitizer.integrity.checks.Checks;
+import org.cryptomator.sanitizer.integrity.checks.CompoundDirectoryCheck;
 import org.cryptomator.sanitizer.integrity.checks.HasCorrespondingDFileCheck;
 import org.cryptomator.sanitizer.integrity.checks.HasCorrespondingDirectoryFileCheck;
+import org.cryptomator.sanitizer.integrity.checks.HeaderReadAhead;
 import org.cryptomator.sanitizer.integrity.problems.Problem;
+import org.cryptomator.sanitizer.integrity.problems.ProblemSink;
 import org.cryptomator.sanitizer.integrity.problems.Problems;
 
+import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
 
 import static org.cryptomator.sanitizer.integrity.checks.Checks.*;
 
 public class IntegrityCheck {
 
 	private final CryptorHolder cryptorHolder;
+	private int threads = 1;
+	private long mmapThreshold = Long.MAX_VALUE;
+	private long maxDamagedChunks = Long.MAX_VALUE;
+	private Optional<CheckCache> cache = Optional.empty();
+	private int readAheadThreads = 0;
+	private Optional<CheckMetrics> metrics = Optional.empty();
+	private Optional<CheckProfiler> profiler = Optional.empty();
 
 	public IntegrityCheck(CryptorHolder cryptorHolder) {
 		this.cryptorHolder = cryptorHolder;
 	}
 
+	public IntegrityCheck withThreads(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be positive");
+		}
+		this.threads = threads;
+		return this;
+	}
+
+	/**
+	 * @param mmapThreshold Encrypted files larger than this many bytes are memory-mapped when checking their integrity. By default, no files are mapped.
+	 */
+	public IntegrityCheck withMmapThreshold(long mmapThreshold) {
+		if (mmapThreshold < 0) {
+			throw new IllegalArgumentException("mmapThreshold must not be negative");
+		}
+		this.mmapThreshold = mmapThreshold;
+		return this;
+	}
+
+	/**
+	 * @param maxDamagedChunks Number of unauthentic chunks after which checking the integrity of an encrypted file stops. By default, all chunks are checked.
+	 */
+	public IntegrityCheck withMaxDamagedChunks(long maxDamagedChunks) {
+		if (maxDamagedChunks < 1) {
+			throw new IllegalArgumentException("maxDamagedChunks must be positive");
+		}
+		this.maxDamagedChunks = maxDamagedChunks;
+		return this;
+	}
+
+	/**
+	 * Skips the authentication of encrypted files which have been verified before and did not change since. Files verified during the check are added to the cache.
+	 */
+	public IntegrityCheck withCache(CheckCache cache) {
+		this.cache = Optional.of(cache);
+		return this;
+	}
+
+	/**
+	 * @param ioThreads Number of threads reading file headers ahead during checks without file integrity. Worthwhile for vaults on network drives. By default, headers
+	 *            are read when a file is checked.
+	 */
+	public IntegrityCheck withHeaderReadAhead(int ioThreads) {
+		if (ioThreads < 0) {
+			throw new IllegalArgumentException("ioThreads must not be negative");
+		}
+		this.readAheadThreads = ioThreads;
+		return this;
+	}
+
+	/**
+	 * Records the progress of the check in the given metrics, which may be read while the check is running.
+	 */
+	public IntegrityCheck withMetrics(CheckMetrics metrics) {
+		this.metrics = Optional.of(metrics);
+		return this;
+	}
+
+	/**
+	 * Measures each check of the vault format in the given profiler.
+	 */
+	public IntegrityCheck withProfiler(CheckProfiler profiler) {
+		this.profiler = Optional.of(profiler);
+		return this;
+	}
+
 	public Set<Problem> check(Path path, CharSequence passphrase, boolean checkFileIntegrity) throws AbortCheckException {
 		Problems problems = new Problems(path);
 		try {
-			cryptorHolder.createCryptor(problems, path, passphrase).ifPresent(cryptor -> {
+			check(problems, VaultIndex.scan(path), passphrase, checkFileIntegrity);
+		} catch (IOException e) {
+			problems.reportException(e);
+		}
+		return problems.asSet();
+	}
+
+	/**
+	 * Like {@link #check(Path, CharSequence, boolean)} but works on an already scanned vault and streams problems to the given sink as soon as they are found instead of
+	 * collecting them.
+	 */
+	public void check(VaultIndex index, CharSequence passphrase, boolean checkFileIntegrity, ProblemSink sink) throws AbortCheckException {
+		check(new Problems(index.vaultLocation(), sink), index, passphrase, checkFileIntegrity);
+	}
+
+	private void check(Problems collectedProblems, VaultIndex index, CharSequence passphrase, boolean checkFileIntegrity) throws AbortCheckException {
+		Path path = index.vaultLocation();
+		Problems problems = metrics.map(collectedProblems::alsoReportingTo).orElse(collectedProblems);
+		metrics.ifPresent(metrics -> metrics.start(index.size()));
+		index.failures().forEach(problems::reportException);
+		try {
+			cryptorHolder.createCryptor(problems, path, passphrase, checkFileIntegrity).ifPresent(cryptor -> {
+				Optional<HeaderReadAhead> readAhead = headerReadAhead(cryptor, checkFileIntegrity);
+				MetadataFileCache files = new MetadataFileCache(MetadataFileCache.DEFAULT_MAX_FILES);
 				try {
-					vaultFormatChecks(cryptor, path, checkFileIntegrity).check(problems, path);
+					HasCorrespondingDirectoryFileCheck hasCorrespondingDirectoryFileCheck = hasCorrespondingDirectoryFile(cryptor, index, files);
+					Supplier<Check> vaultFormat = () -> vaultFormatChecks(cryptor, index, hasCorrespondingDirectoryFileCheck, checkFileIntegrity, readAhead, files);
+					run(collectingReferencedDirectories(hasCorrespondingDirectoryFileCheck), profiler.map(profiler -> profiler.profiling(vaultFormat)).orElseGet(vaultFormat), problems, path);
 				} finally {
-					cryptor.destroy();
+					readAhead.ifPresent(HeaderReadAhead::close);
+					cryptorHolder.destroyCryptor();
 				}
 			});
 		} catch (AbortCheckException e) {
 			throw e;
 		} catch (Exception e) {
 			problems.reportException(e);
+		} finally {
+			metrics.ifPresent(CheckMetrics::finish);
+		}
+	}
+
+	private Optional<HeaderReadAhead> headerReadAhead(Cryptor cryptor, boolean checkFileIntegrity) {
+		if (readAheadThreads == 0 || checkFileIntegrity) {
+			return Optional.empty();
+		}
+		return Optional.of(new HeaderReadAhead(cryptor.fileHeaderCryptor().headerSize(), readAheadThreads, cache));
+	}
+
+	private Check collectingReferencedDirectories(HasCorrespondingDirectoryFileCheck hasCorrespondingDirectoryFileCheck) {
+		return (problems, path) -> hasCorrespondingDirectoryFileCheck.collectReferencedDirectoriesNow();
+	}
+
+	/**
+	 * Runs the preparation before the check, both in the pool of the check, so the preparation may use all of its workers.
+	 */
+	private void run(Check preparation, Check check, Problems problems, Path path) {
+		if (threads == 1) {
+			preparation.check(problems, path);
+			check.check(problems, path);
+			return;
+		}
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			pool.invoke(ForkJoinTask.adapt(() -> {
+				preparation.check(problems, path);
+				check.check(problems, path);
+			}));
+		} finally {
+			pool.shutdown();
 		}
-		return problems.asSet();
 	}
 
-	private Check vaultFormatChecks(Cryptor cryptor, Path pathToVault, boolean checkContentIntegrity) {
-		Check referencedDirectoryExists = referencedDirectoryExists(cryptor, pathToVault);
-		HasCorrespondingDirectoryFileCheck hasCorrespondingDirectoryFileCheck = hasCorrespondingDirectoryFile(cryptor, pathToVault);
+	private Check vaultFormatChecks(Cryptor cryptor, VaultIndex index, HasCorrespondingDirectoryFileCheck hasCorrespondingDirectoryFileCheck, boolean checkContentIntegrity,
+			Optional<HeaderReadAhead> readAhead, MetadataFileCache files) {
+		Check referencedDirectoryExists = referencedDirectoryExists(cryptor, index, files);
 		Check decryptedNameCheckForRegularFiles = decryptedNameCheck(cryptor, hasCorrespondingDirectoryFileCheck);
-		HasCorrespondingDFileCheck hasCorrespondingDFile = hasCorrespondingDFileIn(pathToVault);
-		Check decryptedNameCheckForLongFiles = Checks.decryptedNameCheck(cryptor, hasCorrespondingDirectoryFileCheck, hasCorrespondingDFile);
+		HasCorrespondingDFileCheck hasCorrespondingDFile = hasCorrespondingDFileIn(index);
+		Check decryptedNameCheckForLongFiles = Checks.decryptedNameCheck(cryptor, hasCorrespondingDirectoryFileCheck, hasCorrespondingDFile, files);
 		Check emptyEncryptedFileIfEmpty = emptyEncryptedFileIfEmpty();
-		return dir().containing( //
-				dir().that(hasName("d")).validate(nameDoesNotContainUppercaseChars()).containing( //
-						dir().that(hasName("[A-Z2-7]{2}")).validate(nameDoesNotContainLowercaseChars()).containing( //
-								dir().that(hasName("[A-Z2-7]{30}")) //
+		AuthenticationOptions authenticationOptions = AuthenticationOptions.DEFAULTS //
+				.withMmapThreshold(mmapThreshold) //
+				.withCache(cache) //
+				.withReadAhead(readAhead) //
+				.withMetrics(metrics) //
+				.withMaxDamagedChunks(maxDamagedChunks) //
+				.withMacKey(cryptorHolder.optionalMacKey());
+		CompoundDirectoryCheck vaultFormat = dir(index).containing( //
+				dir(index).that(hasName("d")).validate(nameDoesNotContainUppercaseChars()).containing( //
+						dir(index).that(hasName("[A-Z2-7]{2}")).validate(nameDoesNotContainLowercaseChars()).containing( //
+								dir(index).that(hasName("[A-Z2-7]{30}")) //
 										.validate(nameDoesNotContainLowercaseChars()).validate(hasCorrespondingDirectoryFileCheck) //
 										.reportAs(rootDirectoryIfMachting(cryptor)) //
+										.readingHeadersAhead(readAhead) //
 										.containing( //
 												file().that(hasName("0([A-Z2-7]{8})*[A-Z2-7=]{8}")) //
 														.validate(nameDoesNotContainLowercaseChars()) //
-														.validate(hasSize(36).and(containsUuid()).and(referencedDirectoryExists)) //
+														.validate(hasSize(36).and(containsUuid(files)).and(referencedDirectoryExists)) //
 														.validate(decryptedNameCheckForRegularFiles), //
 												file().that(hasName("([A-Z2-7]{8})*[A-Z2-7=]{8}")) //
 														.reportAs(emptyEncryptedFileIfEmpty) //
 														.validate(nameDoesNotContainLowercaseChars()) //
-														.validate(hasMinSize(88).and(isAuthentic(cryptor, checkContentIntegrity))) //
+														.validate(hasMinSize(88).and(isAuthentic(cryptor, checkContentIntegrity, authenticationOptions))) //
 														.validate(decryptedNameCheckForRegularFiles), //
-												file().that(hasName("[A-Z2-7]{32}\\.lng").and(hasCorrespondingMFileIn(pathToVault).that(containsValidFileName()))) //
+												file().that(hasName("[A-Z2-7]{32}\\.lng")).that(hasCorrespondingMFileIn(index).that(containsValidFileName(files))) //
 														.reportAs(emptyEncryptedFileIfEmpty) //
 														.validate(nameDoesNotContainLowercaseChars()) //
-														.validate(hasMinSize(88).and(isAuthentic(cryptor, checkContentIntegrity))), //
-												file().that(hasName("[A-Z2-7]{32}\\.lng").and(hasCorrespondingMFileIn(pathToVault).that(containsValidDirectoryFileName()))) //
+														.validate(hasMinSize(88).and(isAuthentic(cryptor, checkContentIntegrity, authenticationOptions))), //
+												file().that(hasName("[A-Z2-7]{32}\\.lng")).that(hasCorrespondingMFileIn(index).that(containsValidDirectoryFileName(files))) //
 														.validate(nameDoesNotContainLowercaseChars()) //
-														.validate(hasSize(36).and(containsUuid()).and(referencedDirectoryExists)), //
+														.validate(hasSize(36).and(containsUuid(files)).and(referencedDirectoryExists)), //
 												file().that(hasName("[A-Z2-7]{32}\\.lng")) //
 														.validate(nameDoesNotContainLowercaseChars()) //
-														.validate(hasCorrespondingMFileIn(pathToVault)), //
+														.validate(hasCorrespondingMFileIn(index)), //
 												file().that(hasName("0?([A-Z2-7]{8})*[A-Z2-7=]{1,7}")) //
 														.validate(nameDoesNotContainLowercaseChars()) //
-														.validate(hasSize(36).and(containsUuid()).and(referencedDirectoryExists)) //
+														.validate(hasSize(36).and(containsUuid(files)).and(referencedDirectoryExists)) //
 														.validate(decryptedNameCheckForRegularFiles) //
 														.reportAs(aFileWithMissingEqualsSign()), //
 												file().that(hasName("0([A-Z2-7]{8})*[A-Z2-7=]{8}.+")) //
 														.validate(nameDoesNotContainLowercaseChars()) //
-														.validate(hasSize(36).and(containsUuid()).and(referencedDirectoryExists)) //
+														.validate(hasSize(36).and(containsUuid(files)).and(referencedDirectoryExists)) //
 														.validate(decryptedNameCheckForRegularFiles) //
 														.reportAs(aConflict()), //
 												file().that(hasName("([A-Z2-7]{8})*[A-Z2-7=]{8}.+")) //
 														.reportAs(emptyEncryptedFileIfEmpty) //
 														.validate(nameDoesNotContainLowercaseChars()) //
-														.validate(hasMinSize(88).and(isAuthentic(cryptor, checkContentIntegrity))) //
+														.validate(hasMinSize(88).and(isAuthentic(cryptor, checkContentIntegrity, authenticationOptions))) //
 														.validate(decryptedNameCheckForRegularFiles) //
 														.reportAs(aConflict()), //
 												file().that(hasName("[A-Z2-7]{32}.+\\.lng")) //
 														.validate(nameDoesNotContainLowercaseChars()) //
-														.validate(hasCorrespondingMFileIn(pathToVault)) //
+														.validate(hasCorrespondingMFileIn(index)) //
 														.reportAs(aConflict())))), //
-				dir().that(hasName("m")).validate(nameDoesNotContainUppercaseChars()).containing( //
-						dir().that(hasName("[A-Z2-7]{2}")).validate(nameDoesNotContainLowercaseChars()).containing( //
-								dir().that(hasName("[A-Z2-7]{2}")).validate(nameDoesNotContainLowercaseChars()).containing( //
+				dir(index).that(hasName("m")).validate(nameDoesNotContainUppercaseChars()).containing( //
+						dir(index).that(hasName("[A-Z2-7]{2}")).validate(nameDoesNotContainLowercaseChars()).containing( //
+								dir(index).that(hasName("[A-Z2-7]{2}")).validate(nameDoesNotContainLowercaseChars()).containing( //
 										file().that(hasName("[A-Z2-7]{32}\\.lng")) //
 												.validate(nameDoesNotContainLowercaseChars()) //
-												.validate(hasCorrespondingDFile.and(containsValidName()))
+												.validate(hasCorrespondingDFile.and(containsValidName(files)))
 												.validate(decryptedNameCheckForLongFiles), //
 										file().that(hasName("[A-Z2-7]{32}.+\\.lng")) //
 												.validate(nameDoesNotContainLowercaseChars()) //
-												.validate(hasCorrespondingDFile.and(containsValidName())) //
+												.validate(hasCorrespondingDFile.and(containsValidName(files))) //
 												.validate(decryptedNameCheckForLongFiles)
 												.reportAs(aConflict())))), //
 				file().that(hasName("masterkey.cryptomator")).validate(nameDoesNotContainUppercaseChars()), // do not validate contents because this already happened when creating the Cryptor
 				file().that(hasName("masterkey.cryptomator.bkup")).validate(isMasterkeyBackupFile()));
+		metrics.ifPresent(vaultFormat::measuredBy);
+		return vaultFormat;
 	}
 
 }
@@ -1,62 +1,352 @@
 package org.cryptomator.sanitizer.integrity.checks;
 
 import static java.nio.file.StandardOpenOption.READ;
+import static org.cryptomator.sanitizer.integrity.checks.CheckProfiler.countRead;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
-import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.cryptomator.cryptolib.api.AuthenticationFailedException;
 import org.cryptomator.cryptolib.api.Cryptor;
 import org.cryptomator.cryptolib.api.FileHeader;
+import org.cryptomator.sanitizer.integrity.CheckCache;
+import org.cryptomator.sanitizer.integrity.CheckMetrics;
+import org.cryptomator.sanitizer.integrity.problems.DamageMap;
 import org.cryptomator.sanitizer.integrity.problems.Problems;
 
 class AuthenticationCheck implements Check {
 
+	/**
+	 * Number of chunks authenticated by one task when a large file is split into ranges. 256 chunks are about 8 MiB of ciphertext.
+	 */
+	private static final int CHUNKS_PER_RANGE = 256;
+
 	private final Cryptor cryptor;
 	private final boolean alsoCheckContent;
+	private final long mmapThreshold;
+	private final Optional<CheckCache> cache;
+	private final Optional<HeaderReadAhead> readAhead;
+	private final Optional<CheckMetrics> metrics;
+	private final long maxDamagedChunks;
+	private final ThreadLocal<ByteBuffer> headerBuffers;
+	private final ThreadLocal<ByteBuffer> chunkBuffers;
+	private final Optional<ChunkMacVerifier> macVerifier;
 
 	public AuthenticationCheck(Cryptor cryptor, boolean alsoCheckContent) {
+		this(cryptor, alsoCheckContent, AuthenticationOptions.DEFAULTS);
+	}
+
+	public AuthenticationCheck(Cryptor cryptor, boolean alsoCheckContent, AuthenticationOptions options) {
 		this.cryptor = cryptor;
 		this.alsoCheckContent = alsoCheckContent;
+		this.mmapThreshold = options.mmapThreshold();
+		this.cache = options.cache();
+		this.readAhead = options.readAhead();
+		this.metrics = options.metrics();
+		this.maxDamagedChunks = options.maxDamagedChunks();
+		this.headerBuffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(cryptor.fileHeaderCryptor().headerSize()));
+		this.chunkBuffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(cryptor.fileContentCryptor().ciphertextChunkSize()));
+		this.macVerifier = options.macKey().map(macKey -> new ChunkMacVerifier(macKey, cryptor.fileContentCryptor().ciphertextChunkSize()));
 	}
 
 	@Override
 	public void checkThrowingExceptions(Problems problems, Path path) throws IOException {
-		ByteBuffer headerBuf = ByteBuffer.allocate(cryptor.fileHeaderCryptor().headerSize());
-		ByteBuffer contentBuf = ByteBuffer.allocate(cryptor.fileContentCryptor().ciphertextChunkSize());
-		try (ReadableByteChannel in = FileChannel.open(path, READ)) {
+		if (cache.isPresent()) {
+			checkUsingCache(cache.get(), problems, path, new EntryName(path));
+		} else {
+			authenticate(problems, path);
+		}
+	}
+
+	@Override
+	public void checkThrowingExceptions(Problems problems, Path path, EntryName name) throws IOException {
+		if (cache.isPresent()) {
+			checkUsingCache(cache.get(), problems, path, name);
+		} else {
+			authenticate(problems, path);
+		}
+	}
+
+	private void checkUsingCache(CheckCache cache, Problems problems, Path path, EntryName name) throws IOException {
+		BasicFileAttributes attributes = name.attributes();
+		if (cache.isUnchangedAndVerified(path, attributes, alsoCheckContent)) {
+			return;
+		}
+		AtomicBoolean authentic = new AtomicBoolean(true);
+		authenticate(problems.alsoReportingTo(problem -> authentic.set(false)), path);
+		if (authentic.get()) {
+			cache.markVerified(path, attributes, alsoCheckContent);
+		}
+	}
+
+	private void authenticate(Problems problems, Path path) throws IOException {
+		Optional<ByteBuffer> readAheadHeader = alsoCheckContent ? Optional.empty() : readAhead.flatMap(readAhead -> readAhead.take(path));
+		if (readAheadHeader.isPresent()) {
+			int read = readAheadHeader.get().remaining();
+			countRead(read);
+			authenticateHeader(problems, path, readAheadHeader.get(), read);
+			metrics.ifPresent(metrics -> metrics.authenticated(read));
+			return;
+		}
+		ByteBuffer headerBuf = headerBuffers.get();
+		headerBuf.clear();
+		try (FileChannel in = FileChannel.open(path, READ)) {
 			int read = in.read(headerBuf);
-			if (read != cryptor.fileHeaderCryptor().headerSize()) {
-				problems.reportSizeMismatch(path, "at least 88 bytes", read);
-				return;
-			}
 			headerBuf.flip();
-			final FileHeader header;
-			try {
-				header = cryptor.fileHeaderCryptor().decryptHeader(headerBuf);
-			} catch (AuthenticationFailedException e) {
-				problems.reportUnauthenticFileHeader(path);
-				return;
+			countRead(Math.max(read, 0));
+			Optional<FileHeader> header = authenticateHeader(problems, path, headerBuf, read);
+			if (header.isPresent() && alsoCheckContent) {
+				DamageMap damage = new DamageMap(maxDamagedChunks);
+				long authenticatedChunkBytes;
+				try {
+					authenticatedChunkBytes = authenticateChunks(damage, in, chunkAuthenticator(header.get(), headerBuf));
+				} finally {
+					if (!damage.isEmpty()) {
+						problems.reportUnauthenticFileContent(path, damage);
+					}
+				}
+				metrics.ifPresent(metrics -> metrics.authenticated(read + authenticatedChunkBytes));
+			} else {
+				metrics.ifPresent(metrics -> metrics.authenticated(Math.max(read, 0)));
+			}
+		}
+	}
+
+	private Optional<FileHeader> authenticateHeader(Problems problems, Path path, ByteBuffer headerBuf, int read) {
+		if (read != cryptor.fileHeaderCryptor().headerSize()) {
+			problems.reportSizeMismatch(path, "at least 88 bytes", read);
+			return Optional.empty();
+		}
+		final FileHeader header;
+		try {
+			header = cryptor.fileHeaderCryptor().decryptHeader(headerBuf);
+		} catch (AuthenticationFailedException e) {
+			problems.reportUnauthenticFileHeader(path);
+			return Optional.empty();
+		}
+		long filesize = header.getFilesize();
+		if (filesize != -1L) {
+			problems.reportFileSizeInHeader(path, filesize);
+		}
+		return Optional.of(header);
+	}
+
+	/**
+	 * Files are authenticated in ranges of {@value #CHUNKS_PER_RANGE} chunks. When running inside a {@link ForkJoinPool}, the ranges of large files are authenticated in
+	 * parallel, but their damaged chunks are added to the damage map in chunk order. The limit of the damage map therefore cuts the file at the same chunk as a
+	 * sequential check would, and no further ranges are started once it is reached.
+	 *
+	 * @return the number of bytes of the chunks authenticated in the ranges whose results were added to the damage map, which is less than the content of the file if
+	 *         the limit of the damage map has been reached
+	 */
+	private long authenticateChunks(DamageMap damage, FileChannel in, ChunkAuthenticator chunks) throws IOException {
+		long size = in.size();
+		long chunkSize = cryptor.fileContentCryptor().ciphertextChunkSize();
+		long numChunks = (size - cryptor.fileHeaderCryptor().headerSize() + chunkSize - 1) / chunkSize;
+		boolean mapped = size > mmapThreshold;
+		if (ForkJoinTask.inForkJoinPool() && numChunks > CHUNKS_PER_RANGE) {
+			return authenticateRangesInParallel(damage, in, chunks, numChunks, mapped);
+		}
+		long authenticatedBytes = 0;
+		for (long firstChunk = 0; firstChunk < numChunks; firstChunk += CHUNKS_PER_RANGE) {
+			DamagedChunks range = authenticateChunkRange(in, chunks, firstChunk, Math.min(numChunks, firstChunk + CHUNKS_PER_RANGE), mapped, remainingDamage(damage));
+			authenticatedBytes += range.authenticatedBytes;
+			if (!addInOrder(damage, range, numChunks)) {
+				break;
 			}
-			long filesize = header.getFilesize();
-			if (filesize != -1L) {
-				problems.reportFileSizeInHeader(path, filesize);
+		}
+		return authenticatedBytes;
+	}
+
+	/**
+	 * At most as many ranges as the pool has threads are in progress. Ranges are joined in ascending order, so a damage limit reached in one range cancels the ranges
+	 * after it.
+	 */
+	private long authenticateRangesInParallel(DamageMap damage, FileChannel in, ChunkAuthenticator chunks, long numChunks, boolean mapped) throws IOException {
+		int window = ForkJoinTask.getPool().getParallelism();
+		Deque<ForkJoinTask<DamagedChunks>> inProgress = new ArrayDeque<>();
+		long nextChunk = 0;
+		long authenticatedBytes = 0;
+		try {
+			while (nextChunk < numChunks || !inProgress.isEmpty()) {
+				while (nextChunk < numChunks && inProgress.size() < window) {
+					long from = nextChunk;
+					long to = Math.min(numChunks, nextChunk + CHUNKS_PER_RANGE);
+					long maxDamage = remainingDamage(damage);
+					inProgress.add(ForkJoinTask.adapt(() -> authenticateChunkRange(in, chunks, from, to, mapped, maxDamage)).fork());
+					nextChunk = to;
+				}
+				DamagedChunks range = inProgress.remove().join();
+				authenticatedBytes += range.authenticatedBytes;
+				if (!addInOrder(damage, range, numChunks)) {
+					break;
+				}
 			}
-			long chunkNumber = 0;
-			while (alsoCheckContent && (read = in.read(contentBuf)) > 0) {
-				contentBuf.flip();
-				try {
-					cryptor.fileContentCryptor().decryptChunk(contentBuf, chunkNumber, header, true);
-				} catch (AuthenticationFailedException e) {
-					problems.reportUnauthenticFileContent(path, chunkNumber);
+			return authenticatedBytes;
+		} catch (RuntimeException e) {
+			for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+				if (cause instanceof IOException) {
+					throw (IOException) cause;
 				}
-				contentBuf.clear();
-				chunkNumber++;
+			}
+			throw e;
+		} finally {
+			for (ForkJoinTask<DamagedChunks> task : inProgress) {
+				task.cancel(false);
+				task.quietlyJoin();
 			}
 		}
 	}
 
+	/**
+	 * Ranges preceding the next range may still add damage, so the damage still allowed before the limit is an upper bound of what the next range has to record.
+	 */
+	private long remainingDamage(DamageMap damage) {
+		return maxDamagedChunks - damage.damagedChunks();
+	}
+
+	/**
+	 * @return <code>false</code> if the limit of the damage map has been reached, in which case the damage map is told whether chunks after the last one added are
+	 *         skipped
+	 */
+	private boolean addInOrder(DamageMap damage, DamagedChunks range, long numChunks) {
+		for (int i = 0; i < range.count; i++) {
+			long chunkNumber = range.chunkNumbers[i];
+			damage.add(chunkNumber);
+			if (damage.limitReached()) {
+				if (chunkNumber < numChunks - 1) {
+					damage.markSkipped();
+				}
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private DamagedChunks authenticateChunkRange(FileChannel in, ChunkAuthenticator chunks, long fromChunk, long toChunk, boolean mapped, long maxDamage)
+			throws IOException {
+		DamagedChunks damage = new DamagedChunks((int) Math.min(maxDamage, toChunk - fromChunk));
+		if (mapped) {
+			authenticateMappedChunkRange(damage, in, chunks, fromChunk, toChunk);
+		} else {
+			authenticateReadChunkRange(damage, in, chunks, fromChunk, toChunk);
+		}
+		return damage;
+	}
+
+	private void authenticateReadChunkRange(DamagedChunks damage, FileChannel in, ChunkAuthenticator chunks, long fromChunk, long toChunk) throws IOException {
+		int headerSize = cryptor.fileHeaderCryptor().headerSize();
+		int chunkSize = cryptor.fileContentCryptor().ciphertextChunkSize();
+		ByteBuffer contentBuf = chunkBuffers.get();
+		contentBuf.clear();
+		for (long chunkNumber = fromChunk; chunkNumber < toChunk && !damage.isFull(); chunkNumber++) {
+			if (readFully(in, contentBuf, headerSize + chunkNumber * chunkSize) <= 0) {
+				break;
+			}
+			contentBuf.flip();
+			authenticateChunk(damage, contentBuf, chunkNumber, chunks);
+			contentBuf.clear();
+		}
+	}
+
+	private void authenticateMappedChunkRange(DamagedChunks damage, FileChannel in, ChunkAuthenticator chunks, long fromChunk, long toChunk) throws IOException {
+		int headerSize = cryptor.fileHeaderCryptor().headerSize();
+		int chunkSize = cryptor.fileContentCryptor().ciphertextChunkSize();
+		long rangeStart = headerSize + fromChunk * chunkSize;
+		long rangeEnd = Math.min(in.size(), headerSize + toChunk * chunkSize);
+		if (rangeEnd <= rangeStart) {
+			return;
+		}
+		ByteBuffer range = in.map(MapMode.READ_ONLY, rangeStart, rangeEnd - rangeStart);
+		countRead(rangeEnd - rangeStart);
+		for (long chunkNumber = fromChunk; chunkNumber < toChunk && range.hasRemaining() && !damage.isFull(); chunkNumber++) {
+			ByteBuffer chunk = range.slice();
+			chunk.limit(Math.min(chunkSize, range.remaining()));
+			range.position(range.position() + chunk.limit());
+			authenticateChunk(damage, chunk, chunkNumber, chunks);
+		}
+	}
+
+	private void authenticateChunk(DamagedChunks damage, ByteBuffer chunk, long chunkNumber, ChunkAuthenticator chunks) {
+		damage.authenticatedBytes += chunk.remaining();
+		if (!chunks.isAuthentic(chunk, chunkNumber)) {
+			damage.add(chunkNumber);
+		}
+	}
+
+	/**
+	 * Chunks are only decrypted if no MAC key is known to {@link ChunkMacVerifier verify their MAC on its own}.
+	 */
+	private ChunkAuthenticator chunkAuthenticator(FileHeader header, ByteBuffer headerBuf) {
+		if (macVerifier.isPresent()) {
+			byte[] headerNonce = new byte[ChunkMacVerifier.HEADER_NONCE_SIZE];
+			for (int i = 0; i < headerNonce.length; i++) {
+				headerNonce[i] = headerBuf.get(i);
+			}
+			return (chunk, chunkNumber) -> macVerifier.get().verify(headerNonce, chunkNumber, chunk);
+		}
+		return (chunk, chunkNumber) -> {
+			try {
+				cryptor.fileContentCryptor().decryptChunk(chunk, chunkNumber, header, true);
+				return true;
+			} catch (AuthenticationFailedException e) {
+				return false;
+			}
+		};
+	}
+
+	private int readFully(FileChannel in, ByteBuffer buf, long position) throws IOException {
+		int total = 0;
+		while (buf.hasRemaining()) {
+			int read = in.read(buf, position + total);
+			if (read < 0) {
+				break;
+			}
+			total += read;
+		}
+		countRead(total);
+		return total;
+	}
+
+	/**
+	 * The damaged chunks of one range in ascending order and the number of bytes of all chunks authenticated in the range. A range stops once it found as many damaged
+	 * chunks as the damage map may still take.
+	 */
+	private static class DamagedChunks {
+
+		private final long[] chunkNumbers;
+		private int count;
+		private long authenticatedBytes;
+
+		public DamagedChunks(int maxDamage) {
+			this.chunkNumbers = new long[maxDamage];
+		}
+
+		public boolean isFull() {
+			return count == chunkNumbers.length;
+		}
+
+		public void add(long chunkNumber) {
+			chunkNumbers[count++] = chunkNumber;
+		}
+
+	}
+
+	@FunctionalInterface
+	private interface ChunkAuthenticator {
+
+		boolean isAuthentic(ByteBuffer chunk, long chunkNumber);
+
+	}
+
 }
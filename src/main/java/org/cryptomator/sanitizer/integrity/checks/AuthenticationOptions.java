@@ -0,0 +1,100 @@
+package org.cryptomator.sanitizer.integrity.checks;
+
+import java.util.Optional;
+
+import javax.crypto.SecretKey;
+
+import org.cryptomator.sanitizer.integrity.CheckCache;
+import org.cryptomator.sanitizer.integrity.CheckMetrics;
+
+/**
+ * Settings of the authentication of encrypted files, shared by all files of a check run. Immutable, each <code>with</code> method returns a copy.
+ */
+public class AuthenticationOptions {
+
+	public static final AuthenticationOptions DEFAULTS = new AuthenticationOptions(Long.MAX_VALUE, Optional.empty(), Optional.empty(), Optional.empty(), Long.MAX_VALUE, Optional.empty());
+
+	private final long mmapThreshold;
+	private final Optional<CheckCache> cache;
+	private final Optional<HeaderReadAhead> readAhead;
+	private final Optional<CheckMetrics> metrics;
+	private final long maxDamagedChunks;
+	private final Optional<SecretKey> macKey;
+
+	private AuthenticationOptions(long mmapThreshold, Optional<CheckCache> cache, Optional<HeaderReadAhead> readAhead, Optional<CheckMetrics> metrics,
+			long maxDamagedChunks, Optional<SecretKey> macKey) {
+		this.mmapThreshold = mmapThreshold;
+		this.cache = cache;
+		this.readAhead = readAhead;
+		this.metrics = metrics;
+		this.maxDamagedChunks = maxDamagedChunks;
+		this.macKey = macKey;
+	}
+
+	/**
+	 * @param mmapThreshold Files larger than this many bytes are memory-mapped instead of read into a buffer.
+	 */
+	public AuthenticationOptions withMmapThreshold(long mmapThreshold) {
+		return new AuthenticationOptions(mmapThreshold, cache, readAhead, metrics, maxDamagedChunks, macKey);
+	}
+
+	/**
+	 * @param cache If present, files verified by a previous run are skipped unless they changed.
+	 */
+	public AuthenticationOptions withCache(Optional<CheckCache> cache) {
+		return new AuthenticationOptions(mmapThreshold, cache, readAhead, metrics, maxDamagedChunks, macKey);
+	}
+
+	/**
+	 * @param readAhead If present and content is not checked, headers are taken from the read-ahead instead of being read when the file is checked.
+	 */
+	public AuthenticationOptions withReadAhead(Optional<HeaderReadAhead> readAhead) {
+		return new AuthenticationOptions(mmapThreshold, cache, readAhead, metrics, maxDamagedChunks, macKey);
+	}
+
+	/**
+	 * @param metrics If present, the number of bytes read for authentication is added to it.
+	 */
+	public AuthenticationOptions withMetrics(Optional<CheckMetrics> metrics) {
+		return new AuthenticationOptions(mmapThreshold, cache, readAhead, metrics, maxDamagedChunks, macKey);
+	}
+
+	/**
+	 * @param maxDamagedChunks Number of unauthentic chunks after which the rest of a file is skipped. The damaged chunks of a file are reported as a single problem.
+	 */
+	public AuthenticationOptions withMaxDamagedChunks(long maxDamagedChunks) {
+		return new AuthenticationOptions(mmapThreshold, cache, readAhead, metrics, maxDamagedChunks, macKey);
+	}
+
+	/**
+	 * @param macKey If present, content chunks are authenticated by computing only their MAC with this key instead of decrypting them.
+	 */
+	public AuthenticationOptions withMacKey(Optional<SecretKey> macKey) {
+		return new AuthenticationOptions(mmapThreshold, cache, readAhead, metrics, maxDamagedChunks, macKey);
+	}
+
+	long mmapThreshold() {
+		return mmapThreshold;
+	}
+
+	Optional<CheckCache> cache() {
+		return cache;
+	}
+
+	Optional<HeaderReadAhead> readAhead() {
+		return readAhead;
+	}
+
+	Optional<CheckMetrics> metrics() {
+		return metrics;
+	}
+
+	long maxDamagedChunks() {
+		return maxDamagedChunks;
+	}
+
+	Optional<SecretKey> macKey() {
+		return macKey;
+	}
+
+}
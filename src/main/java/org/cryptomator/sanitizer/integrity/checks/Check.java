@@ -8,12 +8,19 @@ import org.cryptomator.sanitizer.integrity.problems.Problems;
 
 public interface Check extends Predicate<Path> {
 
+	/**
+	 * @return a check running this check and, only if it found no problems, the other one. Each check runs once per path.
+	 */
 	default Check and(Check other) {
-		return (problems,path) -> {
-			if (test(path)) {
-				other.check(problems, path);
+		Check first = CheckProfiler.profiled(this);
+		Check second = CheckProfiler.profiled(other);
+		return (EntryCheck) (problems, path, name) -> {
+			Problems problemsOfFirst = problems.buffer();
+			first.check(problemsOfFirst, path, name);
+			if (problemsOfFirst.isEmpty()) {
+				second.check(problems, path, name);
 			} else {
-				check(problems, path);
+				problemsOfFirst.reportTo(problems);
 			}
 		};
 	}
@@ -22,7 +29,13 @@ public interface Check extends Predicate<Path> {
 	default boolean test(Path path) {
 		Problems problems = new Problems();
 		check(problems, path);
-		return problems.asSet().isEmpty();
+		return problems.isEmpty();
+	}
+
+	default boolean test(Path path, EntryName name) {
+		Problems problems = new Problems();
+		check(problems, path, name);
+		return problems.isEmpty();
 	}
 
 	default void check(Problems problems, Path path) {
@@ -32,7 +45,22 @@ public interface Check extends Predicate<Path> {
 			problems.reportException(e);
 		}
 	}
+
+	/**
+	 * Same as {@link #check(Problems, Path)}, but checks looking at the file name or attributes may use the given view instead of computing them again.
+	 */
+	default void check(Problems problems, Path path, EntryName name) {
+		try {
+			checkThrowingExceptions(problems, path, name);
+		} catch (Exception e) {
+			problems.reportException(e);
+		}
+	}
 	
 	void checkThrowingExceptions(Problems problems, Path path) throws IOException;
+
+	default void checkThrowingExceptions(Problems problems, Path path, EntryName name) throws IOException {
+		checkThrowingExceptions(problems, path);
+	}
 	
 }
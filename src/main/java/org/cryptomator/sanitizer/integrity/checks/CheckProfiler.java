@@ -0,0 +1,211 @@
+package org.cryptomator.sanitizer.integrity.checks;
+
+import static java.util.Comparator.comparingLong;
+import static java.util.stream.Collectors.toList;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.cryptomator.sanitizer.integrity.problems.Problems;
+
+/**
+ * Measures the checks of a check tree: how often each check ran, its wall-clock and CPU time and how many bytes it read.
+ * <p>
+ * Checks created while {@link #profiling(Supplier) building a tree} are measured under the name of the factory method in {@link Checks} which created them, or
+ * after their class if they are passed to a compound check directly. Times and bytes are self values: work of a check running nested in another one on the same
+ * thread, e.g. after being stolen by a fork/join worker, only counts for the nested check. Work a check hands to other threads, such as the parallel authentication
+ * of large files, is not counted at all. Thread-safe.
+ */
+public class CheckProfiler {
+
+	private static final ThreadLocal<CheckProfiler> BUILDING = new ThreadLocal<>();
+	private static final ThreadLocal<ThreadState> THREAD_STATES = ThreadLocal.withInitial(ThreadState::new);
+
+	private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+	private final boolean cpuTimeMeasured;
+	private final Map<String, CheckProfile> profiles = new ConcurrentHashMap<>();
+
+	/**
+	 * CPU time is only measured if the JVM supports it and has it enabled, which is the default of HotSpot. The profiler does not enable it itself, as that setting
+	 * applies to the whole JVM.
+	 */
+	public CheckProfiler() {
+		this.cpuTimeMeasured = threads.isCurrentThreadCpuTimeSupported() && threads.isThreadCpuTimeEnabled();
+	}
+
+	/**
+	 * Builds a check tree, measuring all checks created by the current thread while doing so.
+	 */
+	public <T> T profiling(Supplier<T> treeBuilder) {
+		CheckProfiler previous = BUILDING.get();
+		BUILDING.set(this);
+		try {
+			return treeBuilder.get();
+		} finally {
+			if (previous == null) {
+				BUILDING.remove();
+			} else {
+				BUILDING.set(previous);
+			}
+		}
+	}
+
+	/**
+	 * @return the measured checks, the one with the most wall-clock time first
+	 */
+	public List<CheckProfile> slowestFirst() {
+		return profiles.values().stream() //
+				.sorted(comparingLong(CheckProfile::wallNanos).reversed()) //
+				.collect(toList());
+	}
+
+	public boolean cpuTimeMeasured() {
+		return cpuTimeMeasured;
+	}
+
+	static Check profiled(String name, Check check) {
+		CheckProfiler profiler = BUILDING.get();
+		if (profiler == null || check instanceof ProfiledCheck) {
+			return check;
+		}
+		return new ProfiledCheck(profiler.profiles.computeIfAbsent(name, CheckProfile::new), profiler, check);
+	}
+
+	/**
+	 * Like {@link #profiled(String, Check)}, naming the check after its class. Lambdas are left alone: they either have been profiled by their factory already or
+	 * combine other checks, which are profiled on their own.
+	 */
+	static Check profiled(Check check) {
+		if (BUILDING.get() == null || check.getClass().isSynthetic()) {
+			return check;
+		}
+		String name = check.getClass().getSimpleName();
+		if (name.endsWith("Check")) {
+			name = name.substring(0, name.length() - "Check".length());
+		}
+		return profiled(Character.toLowerCase(name.charAt(0)) + name.substring(1), check);
+	}
+
+	/**
+	 * Counts bytes read by the current thread for the check it is running.
+	 */
+	static void countRead(long bytes) {
+		THREAD_STATES.get().bytesRead += bytes;
+	}
+
+	private long currentThreadCpuTime() {
+		return cpuTimeMeasured ? threads.getCurrentThreadCpuTime() : 0;
+	}
+
+	public static class CheckProfile {
+
+		private final String name;
+		private final LongAdder invocations = new LongAdder();
+		private final LongAdder wallNanos = new LongAdder();
+		private final LongAdder cpuNanos = new LongAdder();
+		private final LongAdder bytesRead = new LongAdder();
+
+		private CheckProfile(String name) {
+			this.name = name;
+		}
+
+		public String name() {
+			return name;
+		}
+
+		public long invocations() {
+			return invocations.sum();
+		}
+
+		public long wallNanos() {
+			return wallNanos.sum();
+		}
+
+		/**
+		 * @return the CPU time, or zero if it is not {@link CheckProfiler#cpuTimeMeasured() measured}
+		 */
+		public long cpuNanos() {
+			return cpuNanos.sum();
+		}
+
+		public long bytesRead() {
+			return bytesRead.sum();
+		}
+
+	}
+
+	private static class ThreadState {
+
+		private long bytesRead;
+		private long nestedWallNanos;
+		private long nestedCpuNanos;
+		private long nestedBytesRead;
+
+	}
+
+	private static class ProfiledCheck implements Check {
+
+		private final CheckProfile profile;
+		private final CheckProfiler profiler;
+		private final Check delegate;
+
+		public ProfiledCheck(CheckProfile profile, CheckProfiler profiler, Check delegate) {
+			this.profile = profile;
+			this.profiler = profiler;
+			this.delegate = delegate;
+		}
+
+		@Override
+		public void checkThrowingExceptions(Problems problems, Path path) throws IOException {
+			measure(() -> delegate.checkThrowingExceptions(problems, path));
+		}
+
+		@Override
+		public void checkThrowingExceptions(Problems problems, Path path, EntryName name) throws IOException {
+			measure(() -> delegate.checkThrowingExceptions(problems, path, name));
+		}
+
+		private void measure(Measured measured) throws IOException {
+			ThreadState state = THREAD_STATES.get();
+			long outerNestedWallNanos = state.nestedWallNanos;
+			long outerNestedCpuNanos = state.nestedCpuNanos;
+			long outerNestedBytesRead = state.nestedBytesRead;
+			state.nestedWallNanos = 0;
+			state.nestedCpuNanos = 0;
+			state.nestedBytesRead = 0;
+			long startBytesRead = state.bytesRead;
+			long startCpuNanos = profiler.currentThreadCpuTime();
+			long startWallNanos = System.nanoTime();
+			try {
+				measured.run();
+			} finally {
+				long wallNanos = System.nanoTime() - startWallNanos;
+				long cpuNanos = profiler.currentThreadCpuTime() - startCpuNanos;
+				long bytesRead = state.bytesRead - startBytesRead;
+				profile.invocations.increment();
+				profile.wallNanos.add(wallNanos - state.nestedWallNanos);
+				profile.cpuNanos.add(cpuNanos - state.nestedCpuNanos);
+				profile.bytesRead.add(bytesRead - state.nestedBytesRead);
+				state.nestedWallNanos = outerNestedWallNanos + wallNanos;
+				state.nestedCpuNanos = outerNestedCpuNanos + cpuNanos;
+				state.nestedBytesRead = outerNestedBytesRead + bytesRead;
+			}
+		}
+
+	}
+
+	@FunctionalInterface
+	private interface Measured {
+
+		void run() throws IOException;
+
+	}
+
+}
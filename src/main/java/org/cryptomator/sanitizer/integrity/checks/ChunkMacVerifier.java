@@ -0,0 +1,67 @@
+package org.cryptomator.sanitizer.integrity.checks;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.ShortBufferException;
+
+import org.cryptomator.cryptolib.api.FileContentCryptor;
+import org.cryptomator.cryptolib.common.MacSupplier;
+
+/**
+ * Authenticates content chunks of the vault format used up to version 6 without decrypting them.
+ * <p>
+ * A chunk consists of a nonce, the ciphertext and a MAC, which is the HMAC-SHA256 of the header nonce, the big-endian chunk number, the chunk nonce and the
+ * ciphertext. Only this MAC is computed, so neither the AES-CTR decryption nor a cleartext buffer per chunk is needed. Thread-safe.
+ */
+class ChunkMacVerifier {
+
+	static final int HEADER_NONCE_SIZE = 16;
+	private static final int CHUNK_NONCE_SIZE = 16;
+	private static final int MAC_SIZE = 32;
+
+	private final SecretKey macKey;
+	private final int ciphertextChunkSize;
+	private final ThreadLocal<byte[]> expectedMacs = ThreadLocal.withInitial(() -> new byte[MAC_SIZE]);
+	private final ThreadLocal<byte[]> actualMacs = ThreadLocal.withInitial(() -> new byte[MAC_SIZE]);
+
+	public ChunkMacVerifier(SecretKey macKey, int ciphertextChunkSize) {
+		this.macKey = macKey;
+		this.ciphertextChunkSize = ciphertextChunkSize;
+	}
+
+	/**
+	 * @param headerNonce The first {@value #HEADER_NONCE_SIZE} bytes of the file header
+	 * @param chunk A whole ciphertext chunk between position and limit. Its position and limit are unchanged afterwards.
+	 * @throws IllegalArgumentException if the chunk is too short or too long, like {@link FileContentCryptor#decryptChunk}
+	 */
+	public boolean verify(byte[] headerNonce, long chunkNumber, ByteBuffer chunk) {
+		int start = chunk.position();
+		int end = chunk.limit();
+		if (end - start < CHUNK_NONCE_SIZE + MAC_SIZE || end - start > ciphertextChunkSize) {
+			throw new IllegalArgumentException("Invalid chunk size: " + (end - start) + ", expected range [" + (CHUNK_NONCE_SIZE + MAC_SIZE) + ", " + ciphertextChunkSize + "]");
+		}
+		Mac mac = MacSupplier.HMAC_SHA256.withKey(macKey);
+		mac.update(headerNonce);
+		for (int shift = Long.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+			mac.update((byte) (chunkNumber >>> shift));
+		}
+		byte[] expectedMac = expectedMacs.get();
+		byte[] actualMac = actualMacs.get();
+		try {
+			chunk.limit(end - MAC_SIZE);
+			mac.update(chunk);
+			mac.doFinal(expectedMac, 0);
+			chunk.limit(end);
+			chunk.get(actualMac);
+		} catch (ShortBufferException e) {
+			throw new IllegalStateException(e);
+		} finally {
+			chunk.limit(end).position(start);
+		}
+		return MessageDigest.isEqual(expectedMac, actualMac);
+	}
+
+}
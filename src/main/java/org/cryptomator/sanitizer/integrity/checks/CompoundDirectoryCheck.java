@@ -1,83 +1,129 @@
 package org.cryptomator.sanitizer.integrity.checks;
 
+import org.cryptomator.sanitizer.VaultIndex;
+import org.cryptomator.sanitizer.integrity.CheckMetrics;
 import org.cryptomator.sanitizer.integrity.problems.Problems;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.stream.Stream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
+import static org.cryptomator.sanitizer.integrity.checks.CheckProfiler.profiled;
 
 public class CompoundDirectoryCheck implements DirectoryCheck {
 
 	private static final Set<String> ALLOWED_ADDITIONAL_FILENAMES = new HashSet<>(asList("desktop.ini"));
+	private static final int BATCHES_PER_WORKER = 4;
 
+	private final VaultIndex index;
 	private final String name;
 	private final boolean required;
 	private List<Check> validations = new ArrayList<>();
 	private List<Check> matchesChecks = new ArrayList<>();
+	private Optional<NameCheck> nameCheck = Optional.empty();
+	private Optional<HeaderReadAhead> readAhead = Optional.empty();
+	private Optional<CheckMetrics> metrics = Optional.empty();
+	private final List<ChildRules> childRules = new ArrayList<>();
 
-	CompoundDirectoryCheck() {
+	CompoundDirectoryCheck(VaultIndex index) {
+		this.index = index;
 		this.name = "?";
 		this.required = false;
 	}
 
-	CompoundDirectoryCheck(String name) {
+	CompoundDirectoryCheck(VaultIndex index, String name) {
+		this.index = index;
 		this.name = name;
 		this.required = true;
 	}
 
 	@Override
 	public boolean dirMatches(Path path) {
-		return matchesChecks.stream().allMatch(check -> check.test(path));
+		return nameCheck.map(check -> check.matches(path)).orElse(true) && otherChecksMatch(path, new EntryName(path));
+	}
+
+	@Override
+	public Optional<String> namePattern() {
+		return nameCheck.map(NameCheck::pattern);
+	}
+
+	@Override
+	public boolean matchesIgnoringName(Path path) {
+		return matchesIgnoringName(path, new EntryName(path));
+	}
+
+	@Override
+	public boolean matchesIgnoringName(Path path, EntryName name) {
+		return name.isDirectory() && otherChecksMatch(path, name);
+	}
+
+	private boolean otherChecksMatch(Path path, EntryName name) {
+		return matchesChecks.stream().allMatch(check -> check.test(path, name));
 	}
 
 	@Override
 	public void checkThrowingExceptions(Problems problems, Path path) throws IOException {
-		validations.forEach(check -> check.check(problems, path));
+		checkThrowingExceptions(problems, path, new EntryName(path));
+	}
+
+	@Override
+	public void checkThrowingExceptions(Problems problems, Path path, EntryName name) throws IOException {
+		validations.forEach(check -> check.check(problems, path, name));
 	}
 
 	public CompoundDirectoryCheck validate(Check check) {
-		validations.add(check);
+		validations.add(profiled(check));
 		return this;
 	}
 
 	public CompoundDirectoryCheck reportAs(Check check) {
-		validations.add(check);
+		validations.add(profiled(check));
 		return this;
 	}
 
 	public CompoundDirectoryCheck that(Check check) {
-		matchesChecks.add(check);
+		if (check instanceof NameCheck && !nameCheck.isPresent()) {
+			nameCheck = Optional.of((NameCheck) check);
+		} else {
+			matchesChecks.add(profiled(check));
+		}
+		return this;
+	}
+
+	/**
+	 * Reads the headers of the files in matching directories ahead while their children are checked.
+	 */
+	public CompoundDirectoryCheck readingHeadersAhead(Optional<HeaderReadAhead> readAhead) {
+		this.readAhead = readAhead;
 		return this;
 	}
 
+	/**
+	 * Records visited entries and the time spent in each rule below this directory check.
+	 */
+	public CompoundDirectoryCheck measuredBy(CheckMetrics metrics) {
+		measuredBy(metrics, "");
+		return this;
+	}
+
+	private void measuredBy(CheckMetrics metrics, String ruleName) {
+		this.metrics = Optional.of(metrics);
+		childRules.forEach(rules -> rules.measuredBy(metrics, ruleName));
+	}
+
+	/**
+	 * Each child is checked by the first of the given checks it matches. The name patterns of all checks are compiled into a single {@link NameClassifier}, so the name of
+	 * each child is classified in one pass.
+	 */
 	public CompoundDirectoryCheck containing(FilteredCheck... checksAsArray) {
-		Collection<FilteredCheck> checks = asList(checksAsArray);
-		this.validations.add((problems, dir) -> {
-			Set<FilteredCheck> unusedRequiredChecks = checks.stream() //
-					.filter(FilteredCheck::required).collect(toSet());
-			try (Stream<Path> children = Files.list(dir)) {
-				children.forEach(child -> {
-					Optional<FilteredCheck> check = checks.stream() //
-							.filter(c -> c.matches(child)).findFirst();
-					if (check.isPresent()) {
-						unusedRequiredChecks.remove(check.get());
-						check.get().check(problems, child);
-					} else {
-						if (!isAllowed(child)) {
-							problems.reportSuspectFile(child);
-						}
-					}
-				});
-			}
-			unusedRequiredChecks.forEach(check -> {
-				problems.reportMissingFile(dir, check.toString());
-			});
-		});
+		ChildRules rules = new ChildRules(asList(checksAsArray));
+		childRules.add(rules);
+		this.validations.add(rules::check);
 		return this;
 	}
 
@@ -86,8 +132,7 @@ public class CompoundDirectoryCheck implements DirectoryCheck {
 		return name;
 	}
 
-	private boolean isAllowed(Path file) {
-		String name = file.getFileName().toString();
+	private boolean isAllowed(String name) {
 		return name.startsWith(".") || ALLOWED_ADDITIONAL_FILENAMES.contains(name);
 	}
 
@@ -96,4 +141,107 @@ public class CompoundDirectoryCheck implements DirectoryCheck {
 		return required;
 	}
 
+	private class ChildRules {
+
+		private final List<FilteredCheck> checks;
+		private final NameClassifier classifier;
+		private final String[] ruleNames;
+
+		public ChildRules(List<FilteredCheck> checks) {
+			this.checks = checks;
+			this.classifier = NameClassifier.compile(checks.stream().map(FilteredCheck::namePattern).collect(toList()));
+			this.ruleNames = new String[checks.size()];
+		}
+
+		/**
+		 * Names each rule after its name pattern, numbering rules whose pattern is not unique among their siblings.
+		 */
+		public void measuredBy(CheckMetrics metrics, String parentRuleName) {
+			for (int i = 0; i < checks.size(); i++) {
+				String pattern = checks.get(i).namePattern().orElse("*");
+				boolean unique = checks.stream().filter(check -> check.namePattern().orElse("*").equals(pattern)).count() == 1;
+				ruleNames[i] = (parentRuleName.isEmpty() ? "" : parentRuleName + "/") + pattern + (unique ? "" : " #" + (i + 1));
+				if (checks.get(i) instanceof CompoundDirectoryCheck) {
+					((CompoundDirectoryCheck) checks.get(i)).measuredBy(metrics, ruleNames[i]);
+				}
+			}
+		}
+
+		public void check(Problems problems, Path dir) throws IOException {
+			Set<FilteredCheck> unusedRequiredChecks = checks.stream() //
+					.filter(FilteredCheck::required).collect(toSet());
+			List<VaultIndex.Entry> children = index.children(dir);
+			readAhead.ifPresent(readAhead -> readAhead.begin(dir, children));
+			try {
+				checkChildren(problems, children).forEach(check -> {
+					check.ifPresent(unusedRequiredChecks::remove);
+				});
+			} finally {
+				readAhead.ifPresent(readAhead -> readAhead.end(dir));
+			}
+			unusedRequiredChecks.forEach(check -> {
+				problems.reportMissingFile(dir, check.toString());
+			});
+		}
+
+		/**
+		 * When running inside a {@link ForkJoinPool} the children are split into batches of adjacent children, a few per worker, each checked in its own task. Idle
+		 * workers can steal whole batches and subtrees, while large directories do not turn into one task per entry. Checks of children of the same directory, e.g.
+		 * the decryption of their names, thus run in parallel.
+		 */
+		private List<Optional<FilteredCheck>> checkChildren(Problems problems, List<VaultIndex.Entry> children) {
+			if (ForkJoinTask.inForkJoinPool() && children.size() > 1) {
+				int batches = Math.min(children.size(), BATCHES_PER_WORKER * ForkJoinTask.getPool().getParallelism());
+				List<ForkJoinTask<List<Optional<FilteredCheck>>>> tasks = new ArrayList<>(batches);
+				for (int i = 0; i < batches; i++) {
+					List<VaultIndex.Entry> batch = children.subList(i * children.size() / batches, (i + 1) * children.size() / batches);
+					tasks.add(ForkJoinTask.adapt(() -> checkChildrenOneByOne(problems, batch)));
+				}
+				return ForkJoinTask.invokeAll(tasks).stream() //
+						.flatMap(task -> task.join().stream()) //
+						.collect(toList());
+			} else {
+				return checkChildrenOneByOne(problems, children);
+			}
+		}
+
+		private List<Optional<FilteredCheck>> checkChildrenOneByOne(Problems problems, List<VaultIndex.Entry> children) {
+			return children.stream() //
+					.map(child -> checkChild(problems, child)) //
+					.collect(toList());
+		}
+
+		private Optional<FilteredCheck> checkChild(Problems problems, VaultIndex.Entry child) {
+			Path path = child.path();
+			EntryName name = new EntryName(path, child.attributes());
+			int rule = firstMatchingRule(path, name);
+			if (rule != -1) {
+				long start = System.nanoTime();
+				checks.get(rule).checkMatching(problems, path, name);
+				metrics.ifPresent(metrics -> metrics.ruleApplied(ruleNames[rule], System.nanoTime() - start));
+			} else if (!isAllowed(name.name())) {
+				problems.reportSuspectFile(path);
+			}
+			metrics.ifPresent(metrics -> {
+				if (child.isDirectory()) {
+					metrics.visitedDirectory();
+				} else {
+					metrics.visitedFile();
+				}
+			});
+			return rule != -1 ? Optional.of(checks.get(rule)) : Optional.empty();
+		}
+
+		private int firstMatchingRule(Path child, EntryName name) {
+			for (long candidates = classifier.classify(name.name()); candidates != 0; candidates &= candidates - 1) {
+				int candidate = Long.numberOfTrailingZeros(candidates);
+				if (checks.get(candidate).matchesIgnoringName(child, name)) {
+					return candidate;
+				}
+			}
+			return -1;
+		}
+
+	}
+
 }
@@ -6,8 +6,9 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
-import static java.nio.file.Files.isRegularFile;
+import static org.cryptomator.sanitizer.integrity.checks.CheckProfiler.profiled;
 
 public class CompoundFileCheck implements FileCheck {
 
@@ -15,6 +16,7 @@ public class CompoundFileCheck implements FileCheck {
 	private final boolean required;
 	private List<Check> validations = new ArrayList<>();
 	private List<Check> matchesChecks = new ArrayList<>();
+	private Optional<NameCheck> nameCheck = Optional.empty();
 
 	CompoundFileCheck() {
 		this.name = "?";
@@ -28,26 +30,55 @@ public class CompoundFileCheck implements FileCheck {
 
 	@Override
 	public boolean fileMatches(Path path) {
-		return isRegularFile(path) && matchesChecks.stream().allMatch(check -> check.test(path));
+		EntryName name = new EntryName(path);
+		return name.isRegularFile() && nameCheck.map(check -> check.matches(path)).orElse(true) && otherChecksMatch(path, name);
+	}
+
+	@Override
+	public Optional<String> namePattern() {
+		return nameCheck.map(NameCheck::pattern);
+	}
+
+	@Override
+	public boolean matchesIgnoringName(Path path) {
+		return matchesIgnoringName(path, new EntryName(path));
+	}
+
+	@Override
+	public boolean matchesIgnoringName(Path path, EntryName name) {
+		return name.isRegularFile() && otherChecksMatch(path, name);
+	}
+
+	private boolean otherChecksMatch(Path path, EntryName name) {
+		return matchesChecks.stream().allMatch(check -> check.test(path, name));
 	}
 
 	@Override
 	public void checkThrowingExceptions(Problems problems, Path path) throws IOException {
-		validations.forEach(check -> check.check(problems, path));
+		checkThrowingExceptions(problems, path, new EntryName(path));
+	}
+
+	@Override
+	public void checkThrowingExceptions(Problems problems, Path path, EntryName name) throws IOException {
+		validations.forEach(check -> check.check(problems, path, name));
 	}
 
 	public CompoundFileCheck that(Check check) {
-		matchesChecks.add(check);
+		if (check instanceof NameCheck && !nameCheck.isPresent()) {
+			nameCheck = Optional.of((NameCheck) check);
+		} else {
+			matchesChecks.add(profiled(check));
+		}
 		return this;
 	}
 
 	public CompoundFileCheck reportAs(Check check) {
-		validations.add(check);
+		validations.add(profiled(check));
 		return this;
 	}
 
 	public CompoundFileCheck validate(Check check) {
-		validations.add(check);
+		validations.add(profiled(check));
 		return this;
 	}
 
@@ -2,16 +2,15 @@ package org.cryptomator.sanitizer.integrity.checks;
 
 import org.cryptomator.cryptolib.api.AuthenticationFailedException;
 import org.cryptomator.cryptolib.api.Cryptor;
+import org.cryptomator.sanitizer.MetadataFileCache;
 import org.cryptomator.sanitizer.integrity.problems.NameNormalizationProblem.EncryptedNodeInfo;
 import org.cryptomator.sanitizer.integrity.problems.Problems;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.Optional;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
-import static java.nio.file.Files.readAllBytes;
 import static java.text.Normalizer.Form.NFC;
 import static java.text.Normalizer.isNormalized;
 import static org.cryptomator.sanitizer.utils.NameUtil.decryptablePartOfName;
@@ -21,57 +20,73 @@ class DecryptedNameCheck implements Check {
 	private final Cryptor cryptor;
 	private final HasCorrespondingDirectoryFileCheck hasCorrespondingDirectoryFileCheck;
 	private final Optional<HasCorrespondingDFileCheck> hasCorrespondingDFileCheck;
+	private final Optional<MetadataFileCache> files;
+	private final ThreadLocal<ResolvedDirectory> lastDirectory = new ThreadLocal<>();
 
 	public DecryptedNameCheck(Cryptor cryptor, HasCorrespondingDirectoryFileCheck hasCorrespondingDirectoryFileCheck) {
 		this.cryptor = cryptor;
 		this.hasCorrespondingDirectoryFileCheck = hasCorrespondingDirectoryFileCheck;
 		this.hasCorrespondingDFileCheck = Optional.empty();
+		this.files = Optional.empty();
 	}
 
-	public DecryptedNameCheck(Cryptor cryptor, HasCorrespondingDirectoryFileCheck hasCorrespondingDirectoryFileCheck, HasCorrespondingDFileCheck hasCorrespondingDFileCheck) {
+	/**
+	 * @param files Cache the m-files are read through
+	 */
+	public DecryptedNameCheck(Cryptor cryptor, HasCorrespondingDirectoryFileCheck hasCorrespondingDirectoryFileCheck, HasCorrespondingDFileCheck hasCorrespondingDFileCheck,
+			MetadataFileCache files) {
 		this.cryptor = cryptor;
 		this.hasCorrespondingDirectoryFileCheck = hasCorrespondingDirectoryFileCheck;
 		this.hasCorrespondingDFileCheck = Optional.of(hasCorrespondingDFileCheck);
+		this.files = Optional.of(files);
 	}
 
 	@Override
 	public void checkThrowingExceptions(Problems problems, Path path) throws IOException {
+		checkThrowingExceptions(problems, path, new EntryName(path));
+	}
+
+	@Override
+	public void checkThrowingExceptions(Problems problems, Path path, EntryName name) throws IOException {
 		if (hasCorrespondingDFileCheck.isPresent()) {
-			checkLongFileOrDirectory(problems, path);
+			checkLongFileOrDirectory(problems, path, name);
 		} else {
-			checkRegularFileOrDirectory(problems, path);
+			checkRegularFileOrDirectory(problems, path, name);
 		}
 	}
 
-	private void checkLongFileOrDirectory(Problems problems, Path path) throws IOException {
-		Optional<String> decryptablePartOfName = decryptablePartOfName(new String(readAllBytes(path), UTF_8));
+	private void checkLongFileOrDirectory(Problems problems, Path path, EntryName name) throws IOException {
+		Optional<String> decryptablePartOfName = decryptablePartOfName(files.get().get(path, Checks::readAllBytes).contentsAsString());
 		if (decryptablePartOfName.isPresent()) {
-			Optional<Path> dFile = hasCorrespondingDFileCheck.get().pathOfDFile(path);
+			Optional<Path> dFile = hasCorrespondingDFileCheck.get().pathOfDFile(name);
 			Optional<String> optionalDirectoryId = dFile
 					.map(this::hashedDirectoryIdForFileInDirectory)
 					.flatMap(hasCorrespondingDirectoryFileCheck::getCleartextId);
 			optionalDirectoryId.ifPresent(directoryId -> {
-				checkEncryptedName(directoryId, decryptablePartOfName.get(), problems, dFile.get(), Optional.of(path));
+				checkEncryptedName(directoryId, directoryId.getBytes(UTF_8), decryptablePartOfName.get(), problems, dFile.get(), Optional.of(path));
 			});
 		} else {
 			problems.reportFileContentProblem(path, "name with decryptable part", "");
 		}
 	}
 
-	private void checkRegularFileOrDirectory(Problems problems, Path path) {
-		Optional<String> decryptablePartOfName = decryptablePartOfName(path.getFileName().toString());
+	private void checkRegularFileOrDirectory(Problems problems, Path path, EntryName name) {
+		Optional<String> decryptablePartOfName = name.decryptablePart();
 		if (decryptablePartOfName.isPresent()) {
-			Optional<String> optionalDirectoryId = hasCorrespondingDirectoryFileCheck.getCleartextId(hashedDirectoryIdForFileInDirectory(path));
-			optionalDirectoryId.ifPresent(directoryId -> {
-				checkEncryptedName(directoryId, decryptablePartOfName.get(), problems, path, Optional.empty());
+			ResolvedDirectory parent = parentOf(path);
+			parent.directoryId.ifPresent(directoryId -> {
+				checkEncryptedName(directoryId, parent.associatedData, decryptablePartOfName.get(), problems, path, Optional.empty());
 			});
 		} else {
 			problems.reportNameProblem("name with decryptable part", path);
 		}
 	}
 
-	private void checkEncryptedName(String directoryId, String decryptablePartOfName, Problems problems, Path path, Optional<Path> mFile) {
-		Optional<String> decryptedName = decrypt(directoryId, decryptablePartOfName);
+	/**
+	 * @param associatedData The UTF-8 bytes of the directory ID
+	 */
+	private void checkEncryptedName(String directoryId, byte[] associatedData, String decryptablePartOfName, Problems problems, Path path, Optional<Path> mFile) {
+		Optional<String> decryptedName = decrypt(associatedData, decryptablePartOfName);
 		if (decryptedName.isPresent()) {
 			if (!isNormalized(decryptedName.get(), NFC)) {
 				problems.reportNameNormalizationProblem(new EncryptedNodeInfo(path, directoryId, mFile));
@@ -83,14 +98,26 @@ class DecryptedNameCheck implements Check {
 		}
 	}
 
-	private Optional<String> decrypt(String directoryId, String name) {
+	private Optional<String> decrypt(byte[] associatedData, String name) {
 		try {
-			return Optional.of(cryptor.fileNameCryptor().decryptFilename(name, directoryId.getBytes(StandardCharsets.UTF_8)));
+			return Optional.of(cryptor.fileNameCryptor().decryptFilename(name, associatedData));
 		} catch (AuthenticationFailedException e) {
 			return Optional.empty();
 		}
 	}
 
+	/**
+	 * Children of a directory are checked in batches, so the ID of the directory is resolved and encoded once per batch instead of once per child.
+	 */
+	private ResolvedDirectory parentOf(Path path) {
+		ResolvedDirectory last = lastDirectory.get();
+		if (last == null || !last.path.equals(path.getParent())) {
+			last = new ResolvedDirectory(path.getParent(), hasCorrespondingDirectoryFileCheck.getCleartextId(hashedDirectoryIdForFileInDirectory(path)));
+			lastDirectory.set(last);
+		}
+		return last;
+	}
+
 	private String hashedDirectoryIdForFileInDirectory(Path path) {
 		Path parent = path.getParent();
 		Path parentsParent = parent.getParent();
@@ -99,4 +126,18 @@ class DecryptedNameCheck implements Check {
 		return result;
 	}
 
+	private static class ResolvedDirectory {
+
+		private final Path path;
+		private final Optional<String> directoryId;
+		private final byte[] associatedData;
+
+		public ResolvedDirectory(Path path, Optional<String> directoryId) {
+			this.path = path;
+			this.directoryId = directoryId;
+			this.associatedData = directoryId.map(id -> id.getBytes(UTF_8)).orElse(null);
+		}
+
+	}
+
 }
@@ -0,0 +1,140 @@
+package org.cryptomator.sanitizer.integrity.checks;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Maps hashed directory IDs to cleartext directory IDs without keeping a string per ID.
+ * <p>
+ * The 32 base32 characters of a hashed ID are packed into 160 bits, UUIDs into 128 bits. Both live in an open-addressing table on a single <code>long[]</code>, five
+ * longs per slot, so a directory costs about 53 bytes instead of several hundred. Directory IDs which are not UUIDs, like the one of the root directory, are kept in
+ * an ordinary map.
+ * <p>
+ * {@link #put(String, String) Puts} are synchronized. Lookups do not lock and are thread-safe once the table is published safely after the last put.
+ */
+class DirectoryIdTable {
+
+	private static final int SLOT_SIZE = 5;
+	private static final int MAX_CAPACITY = Integer.MAX_VALUE / SLOT_SIZE;
+	private static final long OCCUPIED = 1L << 63;
+	private static final byte[] BASE32_VALUES = new byte[128];
+
+	static {
+		Arrays.fill(BASE32_VALUES, (byte) -1);
+		String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZ234567";
+		for (int i = 0; i < alphabet.length(); i++) {
+			BASE32_VALUES[alphabet.charAt(i)] = (byte) i;
+		}
+	}
+
+	private final int capacity;
+	private final long[] slots;
+	private final Map<String, String> otherIds = new HashMap<>();
+	private int size;
+
+	/**
+	 * @param expectedSize Maximum number of hashed IDs which are UUIDs
+	 */
+	DirectoryIdTable(int expectedSize) {
+		long capacity = Math.max(16, expectedSize * 4L / 3 + 1);
+		if (capacity > MAX_CAPACITY) {
+			throw new IllegalArgumentException("expectedSize too large: " + expectedSize);
+		}
+		this.capacity = (int) capacity;
+		this.slots = new long[this.capacity * SLOT_SIZE];
+	}
+
+	synchronized void put(String hashedId, String cleartextId) {
+		Optional<UUID> uuid = uuid(cleartextId);
+		if (!uuid.isPresent() || !packable(hashedId)) {
+			otherIds.put(hashedId, cleartextId);
+			return;
+		}
+		long key0 = pack(hashedId, 0, 12);
+		long key1 = pack(hashedId, 12, 24);
+		long key2 = pack(hashedId, 24, 32) | OCCUPIED;
+		int slot = find(key0, key1, key2);
+		if (slots[slot + 2] == 0) {
+			if (size == capacity - 1) {
+				throw new IllegalStateException("Table is full");
+			}
+			slots[slot] = key0;
+			slots[slot + 1] = key1;
+			slots[slot + 2] = key2;
+			size++;
+		}
+		slots[slot + 3] = uuid.get().getMostSignificantBits();
+		slots[slot + 4] = uuid.get().getLeastSignificantBits();
+	}
+
+	Optional<String> get(String hashedId) {
+		if (packable(hashedId)) {
+			long key0 = pack(hashedId, 0, 12);
+			long key1 = pack(hashedId, 12, 24);
+			long key2 = pack(hashedId, 24, 32) | OCCUPIED;
+			int slot = find(key0, key1, key2);
+			if (slots[slot + 2] != 0) {
+				return Optional.of(new UUID(slots[slot + 3], slots[slot + 4]).toString());
+			}
+		}
+		return Optional.ofNullable(otherIds.get(hashedId));
+	}
+
+	boolean containsKey(String hashedId) {
+		return get(hashedId).isPresent();
+	}
+
+	/**
+	 * @return the index of the slot holding the given key or of the empty slot where it belongs
+	 */
+	private int find(long key0, long key1, long key2) {
+		int index = (int) Math.floorMod((key0 ^ key1 ^ key2) * 0x9E3779B97F4A7C15L, (long) capacity);
+		while (true) {
+			int slot = index * SLOT_SIZE;
+			if (slots[slot + 2] == 0 || (slots[slot] == key0 && slots[slot + 1] == key1 && slots[slot + 2] == key2)) {
+				return slot;
+			}
+			index = index + 1 == capacity ? 0 : index + 1;
+		}
+	}
+
+	private static boolean packable(String hashedId) {
+		if (hashedId.length() != 32) {
+			return false;
+		}
+		for (int i = 0; i < 32; i++) {
+			char c = hashedId.charAt(i);
+			if (c >= 128 || BASE32_VALUES[c] == -1) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static long pack(String hashedId, int from, int to) {
+		long result = 0;
+		for (int i = from; i < to; i++) {
+			result = result << 5 | BASE32_VALUES[hashedId.charAt(i)];
+		}
+		return result;
+	}
+
+	/**
+	 * @return the UUID if the directory ID is a UUID in the form written by Cryptomator, i.e. one which {@link UUID#toString()} restores exactly
+	 */
+	private static Optional<UUID> uuid(String directoryId) {
+		if (directoryId.length() != 36) {
+			return Optional.empty();
+		}
+		try {
+			UUID uuid = UUID.fromString(directoryId);
+			return uuid.toString().equals(directoryId) ? Optional.of(uuid) : Optional.empty();
+		} catch (IllegalArgumentException e) {
+			return Optional.empty();
+		}
+	}
+
+}
@@ -0,0 +1,22 @@
+package org.cryptomator.sanitizer.integrity.checks;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.cryptomator.sanitizer.integrity.problems.Problems;
+
+/**
+ * A {@link Check} which looks at the {@link EntryName} of a path, creating one if none is given.
+ */
+@FunctionalInterface
+interface EntryCheck extends Check {
+
+	@Override
+	default void checkThrowingExceptions(Problems problems, Path path) throws IOException {
+		checkThrowingExceptions(problems, path, new EntryName(path));
+	}
+
+	@Override
+	void checkThrowingExceptions(Problems problems, Path path, EntryName name) throws IOException;
+
+}
@@ -0,0 +1,115 @@
+package org.cryptomator.sanitizer.integrity.checks;
+
+import static org.cryptomator.sanitizer.utils.NameUtil.decryptablePartOfName;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Optional;
+
+/**
+ * The file name and attributes of a single directory entry, shared by all checks of that entry. The name, its decryptable part and its case are each computed at
+ * most once. Attributes are taken from the {@link org.cryptomator.sanitizer.VaultIndex scan} if given, otherwise they are read once when first needed. Symbolic
+ * links are followed like {@link Files#isRegularFile(Path, java.nio.file.LinkOption...)} does, so their attributes are always read.
+ * <p>
+ * Instances are created per entry while checking a directory and are not thread-safe.
+ */
+public class EntryName {
+
+	private final Path path;
+	private BasicFileAttributes attributes;
+	private String name;
+	private Optional<String> decryptablePart;
+	private Boolean containsUppercaseChars;
+	private Boolean decryptablePartContainsLowercaseChars;
+
+	public EntryName(Path path) {
+		this.path = path;
+	}
+
+	/**
+	 * @param attributes Attributes read without following symbolic links, e.g. by {@link org.cryptomator.sanitizer.VaultIndex}
+	 */
+	public EntryName(Path path, BasicFileAttributes attributes) {
+		this.path = path;
+		this.attributes = attributes;
+	}
+
+	public String name() {
+		if (name == null) {
+			name = path.getFileName().toString();
+		}
+		return name;
+	}
+
+	/**
+	 * @see org.cryptomator.sanitizer.utils.NameUtil#decryptablePartOfName(String)
+	 */
+	public Optional<String> decryptablePart() {
+		if (decryptablePart == null) {
+			decryptablePart = decryptablePartOfName(name());
+		}
+		return decryptablePart;
+	}
+
+	public boolean containsUppercaseChars() {
+		if (containsUppercaseChars == null) {
+			containsUppercaseChars = containsChar(name(), true);
+		}
+		return containsUppercaseChars;
+	}
+
+	public boolean decryptablePartContainsLowercaseChars() {
+		if (decryptablePartContainsLowercaseChars == null) {
+			decryptablePartContainsLowercaseChars = containsChar(decryptablePart().orElse(""), false);
+		}
+		return decryptablePartContainsLowercaseChars;
+	}
+
+	/**
+	 * @return the attributes of the entry, following symbolic links
+	 */
+	public BasicFileAttributes attributes() throws IOException {
+		if (attributes == null || attributes.isSymbolicLink()) {
+			attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		}
+		return attributes;
+	}
+
+	public boolean isRegularFile() {
+		try {
+			return attributes().isRegularFile();
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	public boolean isDirectory() {
+		try {
+			return attributes().isDirectory();
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	public long size() throws IOException {
+		return attributes().size();
+	}
+
+	private static boolean containsChar(String string, boolean upperCase) {
+		for (int i = 0; i < string.length(); i++) {
+			char c = string.charAt(i);
+			if (upperCase ? Character.isUpperCase(c) : Character.isLowerCase(c)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return name();
+	}
+
+}
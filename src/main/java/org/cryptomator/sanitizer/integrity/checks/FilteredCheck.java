@@ -1,6 +1,7 @@
 package org.cryptomator.sanitizer.integrity.checks;
 
 import java.nio.file.Path;
+import java.util.Optional;
 
 import org.cryptomator.sanitizer.integrity.problems.Problems;
 
@@ -9,8 +10,15 @@ public interface FilteredCheck extends Check {
 	default void check(Problems problems, Path path) {
 		if (!matches(path))
 			return;
+		checkMatching(problems, path, new EntryName(path));
+	}
+
+	/**
+	 * Runs this check on a path already known to {@link #matches(Path) match}.
+	 */
+	default void checkMatching(Problems problems, Path path, EntryName name) {
 		try {
-			checkThrowingExceptions(problems, path);
+			checkThrowingExceptions(problems, path, name);
 		} catch (Exception e) {
 			problems.reportException(e);
 		}
@@ -22,4 +30,25 @@ public interface FilteredCheck extends Check {
 
 	boolean matches(Path path);
 
+	/**
+	 * @return the pattern the names of matching paths must match, if any
+	 */
+	default Optional<String> namePattern() {
+		return Optional.empty();
+	}
+
+	/**
+	 * Same as {@link #matches(Path)} for a path whose name is already known to match the {@link #namePattern() name pattern}.
+	 */
+	default boolean matchesIgnoringName(Path path) {
+		return matches(path);
+	}
+
+	/**
+	 * Same as {@link #matchesIgnoringName(Path)}, but may use the given view of the entry instead of reading its attributes again.
+	 */
+	default boolean matchesIgnoringName(Path path, EntryName name) {
+		return matchesIgnoringName(path);
+	}
+
 }
@@ -1,9 +1,10 @@
 package org.cryptomator.sanitizer.integrity.checks;
 
+import org.cryptomator.sanitizer.VaultIndex;
 import org.cryptomator.sanitizer.integrity.problems.Problems;
 
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
@@ -11,52 +12,81 @@ import java.util.Optional;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
-import static java.nio.file.Files.walk;
 import static org.cryptomator.sanitizer.utils.NameUtil.decryptablePartOfName;
 
 public class HasCorrespondingDFileCheck implements Check {
 
 	private static final Pattern LNG_FILE = Pattern.compile("[A-Z2-7]{32}\\.lng");
 
-	private final Path pathToVault;
-	private final Map<String, Path> dFileNamesToPaths = new HashMap<>();
-	private boolean dFilesCollected;
+	private final VaultIndex index;
+	private volatile Map<String, Path> dFileNamesToPaths;
 
-	public HasCorrespondingDFileCheck(Path pathToVault) {
-		this.pathToVault = pathToVault;
+	public HasCorrespondingDFileCheck(VaultIndex index) {
+		this.index = index;
 	}
 
 	@Override
 	public void checkThrowingExceptions(Problems problems, Path path) throws IOException {
-		collectDFiles();
-		String fileName = path.getFileName().toString();
-		if (!dFileNamesToPaths.containsKey(fileName)) {
+		checkThrowingExceptions(problems, path, new EntryName(path));
+	}
+
+	@Override
+	public void checkThrowingExceptions(Problems problems, Path path, EntryName name) throws IOException {
+		if (!dFileNamesToPaths().containsKey(name.name())) {
 			problems.reportOrphanMFile(path);
 		}
 	}
 
 	public Optional<Path> pathOfDFile(Path mFileInMDir) {
-		return pathOfDFile(mFileInMDir.getFileName().toString());
+		return pathOfDFile(new EntryName(mFileInMDir));
 	}
 
 	public Optional<Path> pathOfDFile(String mFileName) {
-		String name = decryptablePartOfName(mFileName).orElse("") + ".lng";
-		return Optional.ofNullable(dFileNamesToPaths.get(name));
+		return pathOfDFileWithDecryptablePart(decryptablePartOfName(mFileName));
+	}
+
+	Optional<Path> pathOfDFile(EntryName mFileName) {
+		return pathOfDFileWithDecryptablePart(mFileName.decryptablePart());
+	}
+
+	private Optional<Path> pathOfDFileWithDecryptablePart(Optional<String> decryptablePart) {
+		String name = decryptablePart.orElse("") + ".lng";
+		try {
+			return Optional.ofNullable(dFileNamesToPaths().get(name));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Collects the d files on first use. The map is not modified after it has been published, so lookups do not lock.
+	 */
+	private Map<String, Path> dFileNamesToPaths() throws IOException {
+		Map<String, Path> result = dFileNamesToPaths;
+		if (result == null) {
+			synchronized (this) {
+				result = dFileNamesToPaths;
+				if (result == null) {
+					result = collectDFiles();
+					dFileNamesToPaths = result;
+				}
+			}
+		}
+		return result;
 	}
 
-	private void collectDFiles() throws IOException {
-		if (dFilesCollected)
-			return;
-		dFilesCollected = true;
-		Path dFolder = pathToVault.resolve("d");
-		try (Stream<Path> files = walk(dFolder, 3)) {
-			files.filter(Files::isRegularFile).forEach(file -> {
+	private Map<String, Path> collectDFiles() throws IOException {
+		Map<String, Path> result = new HashMap<>();
+		Path dFolder = index.vaultLocation().resolve("d");
+		try (Stream<VaultIndex.Entry> entries = index.walk(dFolder, 3)) {
+			entries.filter(VaultIndex.Entry::isRegularFile).map(VaultIndex.Entry::path).forEach(file -> {
 				String fileName = file.getFileName().toString();
 				if (dFolder.relativize(file).getNameCount() == 3 && LNG_FILE.matcher(fileName).matches()) {
-					dFileNamesToPaths.put(fileName, file);
+					result.put(fileName, file);
 				}
 			});
 		}
+		return result;
 	}
 
 }
@@ -1,50 +1,68 @@
 package org.cryptomator.sanitizer.integrity.checks;
 
 import org.cryptomator.cryptolib.api.Cryptor;
+import org.cryptomator.sanitizer.MetadataFileCache;
+import org.cryptomator.sanitizer.MetadataFileCache.MetadataFile;
+import org.cryptomator.sanitizer.VaultIndex;
 import org.cryptomator.sanitizer.integrity.problems.Problems;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
-import static java.nio.file.Files.readAllBytes;
-import static java.nio.file.Files.walk;
 import static java.util.regex.Pattern.CASE_INSENSITIVE;
 
 public class HasCorrespondingDirectoryFileCheck implements Check {
 
 	public static final String ROOT_DIRECTORY_ID = "";
+	private static final int BATCHES_PER_WORKER = 4;
 	private final Pattern DIRECTORY_FILE_NAME_PATTERN = Pattern.compile("(0([A-Z2-7]{8})*[A-Z2-7=]{1,8})|([A-Z2-7]{32}\\.lng)", CASE_INSENSITIVE);
-	private final Map<String, String> hashedToCleartextDirectoryIds = new HashMap<>();
-	private boolean collectedReferencedDirectories = false;
+	private volatile DirectoryIdTable hashedToCleartextDirectoryIds;
 
 	private final Cryptor cryptor;
+	private final VaultIndex index;
 	private final Path pathToVault;
+	private final MetadataFileCache files;
 
-	HasCorrespondingDirectoryFileCheck(Cryptor cryptor, Path pathToVault) {
+	HasCorrespondingDirectoryFileCheck(Cryptor cryptor, VaultIndex index, MetadataFileCache files) {
 		this.cryptor = cryptor;
-		this.pathToVault = pathToVault;
+		this.index = index;
+		this.pathToVault = index.vaultLocation();
+		this.files = files;
 	}
 
 	@Override
 	public void checkThrowingExceptions(Problems problems, Path path) throws IOException {
-		collectReferencedDirectories();
 		Path relativePath = pathToVault.resolve("d").relativize(path);
 		String hashedDirectoryId = joinNamesWithoutSeparator(relativePath);
-		if (!hashedToCleartextDirectoryIds.containsKey(hashedDirectoryId)) {
+		if (!referencedDirectories().containsKey(hashedDirectoryId)) {
 			problems.reportOrphanDirectory(path);
 		}
 	}
 
+	/**
+	 * Collects the referenced directories now instead of on first use. Within a fork/join pool, call this before the checks start, so all workers are free to hash
+	 * the directory files in parallel and no check has to wait for the collection. Without a <code>d</code> directory, no check needs them and nothing is collected.
+	 */
+	public void collectReferencedDirectoriesNow() throws IOException {
+		if (index.isDirectory(pathToVault.resolve("d"))) {
+			referencedDirectories();
+		}
+	}
+
 	public Optional<String> getCleartextId(String hashedId) {
-		return Optional.ofNullable(hashedToCleartextDirectoryIds.get(hashedId));
+		try {
+			return referencedDirectories().get(hashedId);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
 	}
 
 	private String joinNamesWithoutSeparator(Path relativePath) {
@@ -53,40 +71,79 @@ public class HasCorrespondingDirectoryFileCheck implements Check {
 		return result.toString().toUpperCase();
 	}
 
-	private void collectReferencedDirectories() throws IOException {
-		if (collectedReferencedDirectories)
-			return;
-		hashedToCleartextDirectoryIds.put(cryptor.fileNameCryptor().hashDirectoryId(ROOT_DIRECTORY_ID), "");
-		collectedReferencedDirectories = true;
+	/**
+	 * Collects the referenced directories on first use, unless they have been {@link #collectReferencedDirectoriesNow() collected before}. Once published, lookups do
+	 * not lock.
+	 */
+	private DirectoryIdTable referencedDirectories() throws IOException {
+		DirectoryIdTable result = hashedToCleartextDirectoryIds;
+		if (result == null) {
+			synchronized (this) {
+				result = hashedToCleartextDirectoryIds;
+				if (result == null) {
+					result = collectReferencedDirectories();
+					hashedToCleartextDirectoryIds = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	private DirectoryIdTable collectReferencedDirectories() throws IOException {
 		Path dFolder = pathToVault.resolve("d");
 		Path mFolder = pathToVault.resolve("m");
-		try (Stream<Path> files = walk(dFolder, 3)) {
-			files.filter(Files::isRegularFile).forEach(file -> {
+		List<VaultIndex.Entry> directoryFiles = new ArrayList<>();
+		try (Stream<VaultIndex.Entry> entries = index.walk(dFolder, 3)) {
+			entries.filter(VaultIndex.Entry::isRegularFile).forEach(entry -> {
+				Path file = entry.path();
 				String fileName = file.getFileName().toString();
 				if (dFolder.relativize(file).getNameCount() == 3 && DIRECTORY_FILE_NAME_PATTERN.matcher(fileName).matches()) {
-					addReferencedDirectoryFrom(file);
+					directoryFiles.add(entry);
 				}
 			});
 		}
-		if (Files.isDirectory(mFolder)) {
-			try (Stream<Path> files = walk(mFolder, 3)) {
-				files.filter(Files::isRegularFile).forEach(file -> {
+		if (index.isDirectory(mFolder)) {
+			try (Stream<VaultIndex.Entry> entries = index.walk(mFolder, 3)) {
+				entries.filter(VaultIndex.Entry::isRegularFile).forEach(entry -> {
+					Path file = entry.path();
 					String fileName = file.getFileName().toString();
 					if (dFolder.relativize(file).getNameCount() == 3 && DIRECTORY_FILE_NAME_PATTERN.matcher(fileName).matches()) {
-						addReferencedDirectoryFrom(file);
+						directoryFiles.add(entry);
 					}
 				});
 			}
 		}
+		DirectoryIdTable result = new DirectoryIdTable(directoryFiles.size());
+		result.put(cryptor.fileNameCryptor().hashDirectoryId(ROOT_DIRECTORY_ID), ROOT_DIRECTORY_ID);
+		addReferencedDirectoriesFrom(directoryFiles, result);
+		return result;
+	}
+
+	/**
+	 * When running inside a {@link ForkJoinPool}, i.e. the one of a check with several threads, the directory files are split into batches, a few per worker, each
+	 * hashed in its own task. Otherwise they are hashed one after another.
+	 */
+	private void addReferencedDirectoriesFrom(List<VaultIndex.Entry> directoryFiles, DirectoryIdTable hashedToCleartextDirectoryIds) {
+		if (ForkJoinTask.inForkJoinPool() && directoryFiles.size() > 1) {
+			int batches = Math.min(directoryFiles.size(), BATCHES_PER_WORKER * ForkJoinTask.getPool().getParallelism());
+			List<ForkJoinTask<?>> tasks = new ArrayList<>(batches);
+			for (int i = 0; i < batches; i++) {
+				List<VaultIndex.Entry> batch = directoryFiles.subList(i * directoryFiles.size() / batches, (i + 1) * directoryFiles.size() / batches);
+				tasks.add(ForkJoinTask.adapt(() -> batch.forEach(entry -> addReferencedDirectoryFrom(entry, hashedToCleartextDirectoryIds))));
+			}
+			ForkJoinTask.invokeAll(tasks);
+		} else {
+			directoryFiles.forEach(entry -> addReferencedDirectoryFrom(entry, hashedToCleartextDirectoryIds));
+		}
 	}
 
-	private void addReferencedDirectoryFrom(Path file) {
+	private void addReferencedDirectoryFrom(VaultIndex.Entry entry, DirectoryIdTable hashedToCleartextDirectoryIds) {
+		Path file = entry.path();
 		try {
-			if (Files.size(file) != 36)
+			if (entry.size() != 36)
 				return;
-			String directoryId = new String(readAllBytes(file), UTF_8);
-			String hashedDirectoryId = cryptor.fileNameCryptor().hashDirectoryId(directoryId);
-			hashedToCleartextDirectoryIds.put(hashedDirectoryId, directoryId);
+			MetadataFile directoryFile = files.get(file, Checks::readAllBytes);
+			hashedToCleartextDirectoryIds.put(directoryFile.hashedDirectoryId(cryptor.fileNameCryptor()), directoryFile.contentsAsString());
 		} catch (IOException e) {
 			throw new UncheckedIOException(e);
 		}
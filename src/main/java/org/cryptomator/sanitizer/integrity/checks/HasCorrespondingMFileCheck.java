@@ -1,20 +1,22 @@
 package org.cryptomator.sanitizer.integrity.checks;
 
-import static java.nio.file.Files.exists;
-
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Optional;
 
+import org.cryptomator.sanitizer.VaultIndex;
 import org.cryptomator.sanitizer.integrity.problems.Problems;
 
 public class HasCorrespondingMFileCheck implements Check {
 
+	private final VaultIndex index;
 	private final Path mDirectory;
 	
 	private Check mFileCheck = (problems,path) -> {};
 	
-	HasCorrespondingMFileCheck(Path pathToVault) {
-		this.mDirectory = pathToVault.resolve("m");
+	HasCorrespondingMFileCheck(VaultIndex index) {
+		this.index = index;
+		this.mDirectory = index.vaultLocation().resolve("m");
 	}
 	
 	public HasCorrespondingMFileCheck that(Check check) {
@@ -24,12 +26,18 @@ public class HasCorrespondingMFileCheck implements Check {
 
 	@Override
 	public void checkThrowingExceptions(Problems problems, Path path) throws IOException {
-		String fileName = path.getFileName().toString();
+		checkThrowingExceptions(problems, path, new EntryName(path));
+	}
+
+	@Override
+	public void checkThrowingExceptions(Problems problems, Path path, EntryName name) throws IOException {
+		String fileName = name.name();
 		String firstTwoChars = fileName.substring(0, 2);
 		String nextTwoChars = fileName.substring(2, 4);
 		Path mFile = mDirectory.resolve(firstTwoChars).resolve(nextTwoChars).resolve(fileName);
-		if (exists(mFile)) {
-			mFileCheck.check(problems, mFile);
+		Optional<VaultIndex.Entry> mFileEntry = index.entry(mFile);
+		if (mFileEntry.isPresent()) {
+			mFileCheck.check(problems, mFile, new EntryName(mFile, mFileEntry.get().attributes()));
 		} else {
 			problems.reportMissingMFile(path, mFile);
 		}
@@ -0,0 +1,182 @@
+package org.cryptomator.sanitizer.integrity.checks;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.util.stream.Collectors.toList;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.cryptomator.sanitizer.VaultIndex;
+import org.cryptomator.sanitizer.integrity.CheckCache;
+
+/**
+ * Reads the headers of encrypted files on a pool of I/O threads before they are authenticated.
+ * <p>
+ * When a directory is checked, the headers of its regular files are read in order, with at most a fixed number of headers read but not yet taken by the checking
+ * threads. Authentication then only decrypts headers which already arrived, so checks of vaults on high latency storage no longer wait for one file after the other.
+ * Files taken before their header has been submitted, e.g. by a task checking the end of the directory, are read by the checking thread and skipped here. Files
+ * which a cache knows to be unchanged are not read ahead. Prefetched headers of files which are not taken are dropped when the check of their directory ends.
+ * Thread-safe.
+ */
+public class HeaderReadAhead implements AutoCloseable {
+
+	private final int headerSize;
+	private final int window;
+	private final ExecutorService ioThreads;
+	private final Optional<CheckCache> cache;
+	private final Map<Path, DirectoryReadAhead> directories = new ConcurrentHashMap<>();
+
+	/**
+	 * @param ioThreads Number of header reads in flight. The read-ahead window is four times as large.
+	 * @param cache If present, files which are unchanged since a previous check are left out, as their headers will not be taken.
+	 */
+	public HeaderReadAhead(int headerSize, int ioThreads, Optional<CheckCache> cache) {
+		if (ioThreads < 1) {
+			throw new IllegalArgumentException("ioThreads must be positive");
+		}
+		this.headerSize = headerSize;
+		this.window = 4 * ioThreads;
+		this.cache = cache;
+		AtomicInteger threadNumber = new AtomicInteger();
+		this.ioThreads = Executors.newFixedThreadPool(ioThreads, runnable -> {
+			Thread thread = new Thread(runnable, "header-read-ahead-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	void begin(Path directory, List<VaultIndex.Entry> children) {
+		List<Path> files = children.stream() //
+				.filter(child -> child.isRegularFile() && child.size() >= headerSize) //
+				.filter(child -> !cache.isPresent() || !cache.get().isUnchangedAndVerified(child.path(), child.attributes(), false)) //
+				.map(VaultIndex.Entry::path) //
+				.collect(toList());
+		if (!files.isEmpty()) {
+			DirectoryReadAhead readAhead = new DirectoryReadAhead(files);
+			directories.put(directory, readAhead);
+			readAhead.submitMore();
+		}
+	}
+
+	void end(Path directory) {
+		DirectoryReadAhead readAhead = directories.remove(directory);
+		if (readAhead != null) {
+			readAhead.cancel();
+		}
+	}
+
+	/**
+	 * Takes the header of the given file if it has been read ahead, waiting for the read to complete if it is still in flight.
+	 *
+	 * @return The result of a single {@link FileChannel#read(ByteBuffer) read} of up to one header from the start of the file, flipped for reading. Empty if the file
+	 *         has not been read ahead or reading it failed, in which case the caller should read it itself.
+	 */
+	Optional<ByteBuffer> take(Path file) {
+		DirectoryReadAhead readAhead = directories.get(file.getParent());
+		if (readAhead == null) {
+			return Optional.empty();
+		}
+		return readAhead.take(file);
+	}
+
+	@Override
+	public void close() {
+		ioThreads.shutdownNow();
+		directories.clear();
+	}
+
+	private ByteBuffer readHeader(Path file) {
+		ByteBuffer header = ByteBuffer.allocate(headerSize);
+		try (FileChannel in = FileChannel.open(file, READ)) {
+			if (in.read(header) == -1) {
+				throw new IOException("File is empty: " + file);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		header.flip();
+		return header;
+	}
+
+	private class DirectoryReadAhead {
+
+		private final List<Path> files;
+		private final Map<Path, Integer> positions = new HashMap<>();
+		private final AtomicReferenceArray<CompletableFuture<ByteBuffer>> headers;
+		private final boolean[] taken;
+		private int submitted;
+		private int pending;
+
+		public DirectoryReadAhead(List<Path> files) {
+			this.files = files;
+			this.headers = new AtomicReferenceArray<>(files.size());
+			this.taken = new boolean[files.size()];
+			for (int i = 0; i < files.size(); i++) {
+				positions.put(files.get(i), i);
+			}
+		}
+
+		public Optional<ByteBuffer> take(Path file) {
+			Integer position = positions.get(file);
+			if (position == null) {
+				return Optional.empty();
+			}
+			CompletableFuture<ByteBuffer> header;
+			synchronized (this) {
+				taken[position] = true;
+				header = headers.getAndSet(position, null);
+				if (header != null) {
+					pending--;
+				}
+				submitMore();
+			}
+			if (header == null) {
+				return Optional.empty();
+			}
+			try {
+				return Optional.of(header.join());
+			} catch (RuntimeException e) {
+				return Optional.empty();
+			}
+		}
+
+		/**
+		 * Submits the next files not taken yet until {@link HeaderReadAhead#window} headers are pending.
+		 */
+		public synchronized void submitMore() {
+			for (; submitted < files.size() && pending < window; submitted++) {
+				if (!taken[submitted]) {
+					Path file = files.get(submitted);
+					headers.set(submitted, CompletableFuture.supplyAsync(() -> readHeader(file), ioThreads));
+					pending++;
+				}
+			}
+		}
+
+		public synchronized void cancel() {
+			submitted = files.size();
+			pending = 0;
+			for (int i = 0; i < headers.length(); i++) {
+				CompletableFuture<ByteBuffer> header = headers.getAndSet(i, null);
+				if (header != null) {
+					header.cancel(false);
+				}
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,46 @@
+package org.cryptomator.sanitizer.integrity.checks;
+
+import java.nio.file.Path;
+
+import org.cryptomator.sanitizer.integrity.problems.Problems;
+
+/**
+ * Checks that the whole file name matches a pattern, ignoring case. Compound checks recognize this check in their match conditions and classify names using
+ * {@link NameClassifier} instead of running it.
+ */
+class NameCheck implements Check {
+
+	private final String pattern;
+	private final NameClassifier classifier;
+
+	public NameCheck(String pattern) {
+		this.pattern = pattern;
+		this.classifier = NameClassifier.compile(pattern);
+	}
+
+	public String pattern() {
+		return pattern;
+	}
+
+	public boolean matches(Path path) {
+		return classifier.matches(path.getFileName().toString());
+	}
+
+	@Override
+	public boolean test(Path path) {
+		return matches(path);
+	}
+
+	@Override
+	public void checkThrowingExceptions(Problems problems, Path path) {
+		checkThrowingExceptions(problems, path, new EntryName(path));
+	}
+
+	@Override
+	public void checkThrowingExceptions(Problems problems, Path path, EntryName name) {
+		if (!classifier.matches(name.name())) {
+			problems.reportNameProblem('^' + pattern + '$', path);
+		}
+	}
+
+}
@@ -0,0 +1,462 @@
+package org.cryptomator.sanitizer.integrity.checks;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Matches a name against several patterns at once using a precompiled DFA. {@link #classify(CharSequence)} reads each char once and does not allocate.
+ * <p>
+ * Patterns are matched like {@link java.util.regex.Pattern#matches(String, CharSequence) Pattern.matches} with
+ * {@link java.util.regex.Pattern#CASE_INSENSITIVE CASE_INSENSITIVE}, but only a subset of the syntax is supported: ASCII literals, escaped punctuation, <code>.</code>,
+ * character classes with ranges, groups, alternatives and the greedy quantifiers <code>* + ? {n} {n,} {n,m}</code>. Thread-safe.
+ */
+class NameClassifier {
+
+	private static final int MAX_PATTERNS = Long.SIZE;
+	private static final int OTHER = 128;
+	private static final int OTHER_LINE_TERMINATOR = 129;
+	private static final int NUM_SYMBOLS = 130;
+	private static final int DEAD_STATE = 0;
+	private static final int START_STATE = 1;
+
+	private final int[][] transitions;
+	private final long[] accepted;
+	private final long matchingAnyName;
+
+	private NameClassifier(int[][] transitions, long[] accepted, long matchingAnyName) {
+		this.transitions = transitions;
+		this.accepted = accepted;
+		this.matchingAnyName = matchingAnyName;
+	}
+
+	public static NameClassifier compile(String pattern) {
+		return compile(List.of(Optional.of(pattern)));
+	}
+
+	/**
+	 * @param patterns Up to 64 patterns. An empty pattern matches any name.
+	 * @return a classifier setting bit <code>i</code> of the result of {@link #classify(CharSequence)} if <code>patterns.get(i)</code> matches
+	 * @throws IllegalArgumentException if there are too many patterns or a pattern uses unsupported syntax
+	 */
+	public static NameClassifier compile(List<Optional<String>> patterns) {
+		if (patterns.size() > MAX_PATTERNS) {
+			throw new IllegalArgumentException("At most " + MAX_PATTERNS + " patterns supported");
+		}
+		Nfa nfa = new Nfa();
+		NfaState start = nfa.newState();
+		long matchingAnyName = 0;
+		for (int i = 0; i < patterns.size(); i++) {
+			if (patterns.get(i).isPresent()) {
+				Fragment fragment = new Parser(patterns.get(i).get()).parse().build(nfa);
+				start.epsilons.add(fragment.start);
+				fragment.end.acceptedPattern = i;
+			} else {
+				matchingAnyName |= 1L << i;
+			}
+		}
+		return nfa.toDfa(start, matchingAnyName);
+	}
+
+	/**
+	 * @return a bit mask of the patterns matching the whole name
+	 */
+	public long classify(CharSequence name) {
+		int state = START_STATE;
+		for (int i = 0; i < name.length() && state != DEAD_STATE; i++) {
+			char c = name.charAt(i);
+			if (Character.isHighSurrogate(c) && i + 1 < name.length() && Character.isLowSurrogate(name.charAt(i + 1))) {
+				i++; // a supplementary code point is a single char to the regex engine
+			}
+			state = transitions[state][symbol(c)];
+		}
+		return accepted[state] | matchingAnyName;
+	}
+
+	public boolean matches(CharSequence name) {
+		return classify(name) != 0;
+	}
+
+	private static int symbol(char c) {
+		if (c < 128) {
+			return fold(c);
+		} else if (c == '\u0085' || c == '\u2028' || c == '\u2029') {
+			return OTHER_LINE_TERMINATOR;
+		} else {
+			return OTHER;
+		}
+	}
+
+	private static char fold(char c) {
+		return c >= 'a' && c <= 'z' ? (char) (c - 'a' + 'A') : c;
+	}
+
+	/* Parser: builds a syntax tree of symbol sets, sequences, alternatives and repetitions */
+
+	private interface Node {
+
+		Fragment build(Nfa nfa);
+
+	}
+
+	private static class Parser {
+
+		private final String pattern;
+		private int pos;
+
+		public Parser(String pattern) {
+			this.pattern = pattern;
+		}
+
+		public Node parse() {
+			Node node = alternatives();
+			if (pos != pattern.length()) {
+				throw unsupported();
+			}
+			return node;
+		}
+
+		private Node alternatives() {
+			List<Node> alternatives = new ArrayList<>();
+			alternatives.add(sequence());
+			while (accept('|')) {
+				alternatives.add(sequence());
+			}
+			return alternatives.size() == 1 ? alternatives.get(0) : nfa -> nfa.alternatives(alternatives);
+		}
+
+		private Node sequence() {
+			List<Node> sequence = new ArrayList<>();
+			while (pos < pattern.length() && pattern.charAt(pos) != '|' && pattern.charAt(pos) != ')') {
+				sequence.add(quantified(atom()));
+			}
+			return nfa -> nfa.sequence(sequence);
+		}
+
+		private Node quantified(Node atom) {
+			Node node = atom;
+			while (pos < pattern.length()) {
+				if (accept('*')) {
+					node = repeat(node, 0, -1);
+				} else if (accept('+')) {
+					node = repeat(node, 1, -1);
+				} else if (accept('?')) {
+					node = repeat(node, 0, 1);
+				} else if (accept('{')) {
+					int min = number();
+					int max = min;
+					if (accept(',')) {
+						max = peek() == '}' ? -1 : number();
+					}
+					expect('}');
+					if (max != -1 && max < min) {
+						throw unsupported();
+					}
+					node = repeat(node, min, max);
+				} else {
+					break;
+				}
+			}
+			return node;
+		}
+
+		private Node repeat(Node node, int min, int max) {
+			return nfa -> nfa.repeat(node, min, max);
+		}
+
+		private Node atom() {
+			char c = next();
+			switch (c) {
+			case '(':
+				Node group = alternatives();
+				expect(')');
+				return group;
+			case '[':
+				return symbols(characterClass());
+			case '.':
+				BitSet any = new BitSet(NUM_SYMBOLS);
+				any.set(0, NUM_SYMBOLS);
+				any.clear('\n');
+				any.clear('\r');
+				any.clear(OTHER_LINE_TERMINATOR);
+				return symbols(any);
+			case '\\':
+				return symbols(literal(escaped()));
+			case '*':
+			case '+':
+			case '?':
+			case '{':
+			case '^':
+			case '$':
+				throw unsupported();
+			default:
+				return symbols(literal(c));
+			}
+		}
+
+		private BitSet characterClass() {
+			BitSet symbols = new BitSet(NUM_SYMBOLS);
+			boolean negated = accept('^');
+			do {
+				char from = classChar();
+				if (peek() == '-' && pos + 1 < pattern.length() && pattern.charAt(pos + 1) != ']') {
+					pos++;
+					char to = classChar();
+					if (to < from || to >= 128) {
+						throw unsupported();
+					}
+					for (char c = from; c <= to; c++) {
+						symbols.or(literal(c));
+					}
+				} else {
+					symbols.or(literal(from));
+				}
+			} while (!accept(']'));
+			if (negated) {
+				symbols.flip(0, NUM_SYMBOLS);
+			}
+			return symbols;
+		}
+
+		private char classChar() {
+			char c = next();
+			if (c == '\\') {
+				return escaped();
+			} else if (c == '[' || c == '&') {
+				throw unsupported();
+			} else {
+				return c;
+			}
+		}
+
+		private char escaped() {
+			char c = next();
+			if (Character.isLetterOrDigit(c)) {
+				throw unsupported();
+			}
+			return c;
+		}
+
+		private BitSet literal(char c) {
+			if (c >= 128) {
+				throw unsupported();
+			}
+			BitSet symbols = new BitSet(NUM_SYMBOLS);
+			symbols.set(fold(c));
+			return symbols;
+		}
+
+		private Node symbols(BitSet symbols) {
+			return nfa -> nfa.symbols(symbols);
+		}
+
+		private int number() {
+			int start = pos;
+			while (pos < pattern.length() && Character.isDigit(pattern.charAt(pos))) {
+				pos++;
+			}
+			if (start == pos) {
+				throw unsupported();
+			}
+			return Integer.parseInt(pattern.substring(start, pos));
+		}
+
+		private boolean accept(char c) {
+			if (peek() == c) {
+				pos++;
+				return true;
+			} else {
+				return false;
+			}
+		}
+
+		private void expect(char c) {
+			if (!accept(c)) {
+				throw unsupported();
+			}
+		}
+
+		private int peek() {
+			return pos < pattern.length() ? pattern.charAt(pos) : -1;
+		}
+
+		private char next() {
+			if (pos >= pattern.length()) {
+				throw unsupported();
+			}
+			return pattern.charAt(pos++);
+		}
+
+		private IllegalArgumentException unsupported() {
+			return new IllegalArgumentException("Unsupported name pattern " + pattern + " at index " + pos);
+		}
+
+	}
+
+	/* NFA: Thompson construction, converted to a DFA by subset construction */
+
+	private static class NfaState {
+
+		private final int id;
+		private final List<NfaState> epsilons = new ArrayList<>();
+		private BitSet symbols;
+		private NfaState next;
+		private int acceptedPattern = -1;
+
+		public NfaState(int id) {
+			this.id = id;
+		}
+
+	}
+
+	private static class Fragment {
+
+		private final NfaState start;
+		private final NfaState end;
+
+		public Fragment(NfaState start, NfaState end) {
+			this.start = start;
+			this.end = end;
+		}
+
+	}
+
+	private static class Nfa {
+
+		private final List<NfaState> states = new ArrayList<>();
+
+		public NfaState newState() {
+			NfaState state = new NfaState(states.size());
+			states.add(state);
+			return state;
+		}
+
+		public Fragment symbols(BitSet symbols) {
+			NfaState start = newState();
+			NfaState end = newState();
+			start.symbols = symbols;
+			start.next = end;
+			return new Fragment(start, end);
+		}
+
+		public Fragment sequence(List<Node> nodes) {
+			NfaState start = newState();
+			NfaState end = start;
+			for (Node node : nodes) {
+				Fragment fragment = node.build(this);
+				end.epsilons.add(fragment.start);
+				end = fragment.end;
+			}
+			return new Fragment(start, end);
+		}
+
+		public Fragment alternatives(List<Node> nodes) {
+			NfaState start = newState();
+			NfaState end = newState();
+			for (Node node : nodes) {
+				Fragment fragment = node.build(this);
+				start.epsilons.add(fragment.start);
+				fragment.end.epsilons.add(end);
+			}
+			return new Fragment(start, end);
+		}
+
+		public Fragment repeat(Node node, int min, int max) {
+			NfaState start = newState();
+			NfaState end = start;
+			for (int i = 0; i < min; i++) {
+				Fragment fragment = node.build(this);
+				end.epsilons.add(fragment.start);
+				end = fragment.end;
+			}
+			if (max == -1) {
+				Fragment loop = node.build(this);
+				NfaState loopEnd = newState();
+				end.epsilons.add(loop.start);
+				end.epsilons.add(loopEnd);
+				loop.end.epsilons.add(loop.start);
+				loop.end.epsilons.add(loopEnd);
+				end = loopEnd;
+			} else {
+				NfaState optionalEnd = newState();
+				for (int i = min; i < max; i++) {
+					Fragment fragment = node.build(this);
+					end.epsilons.add(fragment.start);
+					end.epsilons.add(optionalEnd);
+					end = fragment.end;
+				}
+				end.epsilons.add(optionalEnd);
+				end = optionalEnd;
+			}
+			return new Fragment(start, end);
+		}
+
+		public NameClassifier toDfa(NfaState start, long matchingAnyName) {
+			Map<BitSet, Integer> dfaStates = new HashMap<>();
+			List<BitSet> pending = new ArrayList<>();
+			List<int[]> transitions = new ArrayList<>();
+			List<Long> accepted = new ArrayList<>();
+			BitSet dead = new BitSet();
+			for (BitSet initial : List.of(dead, closure(start))) {
+				dfaStates.put(initial, transitions.size());
+				pending.add(initial);
+				transitions.add(new int[NUM_SYMBOLS]);
+				accepted.add(accepted(initial));
+			}
+			for (int i = 0; i < pending.size(); i++) {
+				BitSet current = pending.get(i);
+				for (int symbol = 0; symbol < NUM_SYMBOLS; symbol++) {
+					BitSet target = new BitSet(states.size());
+					for (int s = current.nextSetBit(0); s >= 0; s = current.nextSetBit(s + 1)) {
+						NfaState state = states.get(s);
+						if (state.symbols != null && state.symbols.get(symbol)) {
+							target.or(closure(state.next));
+						}
+					}
+					Integer targetIndex = dfaStates.get(target);
+					if (targetIndex == null) {
+						targetIndex = transitions.size();
+						dfaStates.put(target, targetIndex);
+						pending.add(target);
+						transitions.add(new int[NUM_SYMBOLS]);
+						accepted.add(accepted(target));
+					}
+					transitions.get(i)[symbol] = targetIndex;
+				}
+			}
+			return new NameClassifier(transitions.toArray(new int[0][]), accepted.stream().mapToLong(Long::longValue).toArray(), matchingAnyName);
+		}
+
+		private BitSet closure(NfaState state) {
+			BitSet closure = new BitSet(states.size());
+			List<NfaState> stack = new ArrayList<>();
+			stack.add(state);
+			closure.set(state.id);
+			while (!stack.isEmpty()) {
+				NfaState current = stack.remove(stack.size() - 1);
+				for (NfaState next : current.epsilons) {
+					if (!closure.get(next.id)) {
+						closure.set(next.id);
+						stack.add(next);
+					}
+				}
+			}
+			return closure;
+		}
+
+		private long accepted(BitSet dfaState) {
+			long accepted = 0;
+			for (int s = dfaState.nextSetBit(0); s >= 0; s = dfaState.nextSetBit(s + 1)) {
+				if (states.get(s).acceptedPattern != -1) {
+					accepted |= 1L << states.get(s).acceptedPattern;
+				}
+			}
+			return accepted;
+		}
+
+	}
+
+}
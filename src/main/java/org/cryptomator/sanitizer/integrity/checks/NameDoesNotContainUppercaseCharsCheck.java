@@ -0,0 +1,21 @@
+package org.cryptomator.sanitizer.integrity.checks;
+
+import java.nio.file.Path;
+
+import org.cryptomator.sanitizer.integrity.problems.Problems;
+
+class NameDoesNotContainUppercaseCharsCheck implements Check {
+
+	@Override
+	public void checkThrowingExceptions(Problems problems, Path path) {
+		checkThrowingExceptions(problems, path, new EntryName(path));
+	}
+
+	@Override
+	public void checkThrowingExceptions(Problems problems, Path path, EntryName name) {
+		if (name.containsUppercaseChars()) {
+			problems.reportUppercasedFile(path);
+		}
+	}
+
+}
@@ -0,0 +1,106 @@
+package org.cryptomator.sanitizer.integrity.problems;
+
+import static java.lang.String.format;
+
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+
+/**
+ * The chunks of an encrypted file which failed authentication, kept as ranges of adjacent chunk numbers.
+ * <p>
+ * At most {@value #MAX_RANGES} ranges are listed, further damaged chunks are only counted. Once the given maximum of damaged chunks is reached, the check of the
+ * file {@link #limitReached() should stop}, and a check skipping chunks therefore {@link #markSkipped() says so}. Memory thus stays bounded however badly a file is
+ * damaged. Chunks may be added in any order. Thread-safe.
+ */
+public class DamageMap {
+
+	static final int MAX_RANGES = 100;
+
+	private final long maxDamagedChunks;
+	private final TreeMap<Long, Long> lastChunkByFirstChunk = new TreeMap<>();
+	private long damagedChunks;
+	private long listedChunks;
+	private volatile boolean limitReached;
+	private volatile boolean skipped;
+
+	/**
+	 * @param maxDamagedChunks Number of damaged chunks after which the check of the file should stop, {@link Long#MAX_VALUE} to check all chunks
+	 */
+	public DamageMap(long maxDamagedChunks) {
+		if (maxDamagedChunks < 1) {
+			throw new IllegalArgumentException("maxDamagedChunks must be positive");
+		}
+		this.maxDamagedChunks = maxDamagedChunks;
+	}
+
+	public synchronized void add(long chunkNumber) {
+		Map.Entry<Long, Long> before = lastChunkByFirstChunk.floorEntry(chunkNumber);
+		if (before != null && before.getValue() >= chunkNumber) {
+			return;
+		}
+		damagedChunks++;
+		if (damagedChunks >= maxDamagedChunks) {
+			limitReached = true;
+		}
+		Map.Entry<Long, Long> after = lastChunkByFirstChunk.higherEntry(chunkNumber);
+		boolean extendsBefore = before != null && before.getValue() == chunkNumber - 1;
+		boolean extendsAfter = after != null && after.getKey() == chunkNumber + 1;
+		if (extendsAfter) {
+			lastChunkByFirstChunk.remove(after.getKey());
+		}
+		if (extendsBefore) {
+			lastChunkByFirstChunk.put(before.getKey(), extendsAfter ? after.getValue() : chunkNumber);
+		} else if (extendsAfter || lastChunkByFirstChunk.size() < MAX_RANGES) {
+			lastChunkByFirstChunk.put(chunkNumber, extendsAfter ? after.getValue() : chunkNumber);
+		} else {
+			return;
+		}
+		listedChunks++;
+	}
+
+	/**
+	 * @return <code>true</code> if the maximum number of damaged chunks has been reached
+	 */
+	public boolean limitReached() {
+		return limitReached;
+	}
+
+	/**
+	 * Records that chunks of the file were not checked because the limit has been reached.
+	 */
+	public void markSkipped() {
+		skipped = true;
+	}
+
+	/**
+	 * @return <code>true</code> if the check of the file stopped before its last chunk
+	 */
+	public boolean hasSkippedChunks() {
+		return skipped;
+	}
+
+	public synchronized boolean isEmpty() {
+		return damagedChunks == 0;
+	}
+
+	public synchronized long damagedChunks() {
+		return damagedChunks;
+	}
+
+	/**
+	 * @return the ranges of damaged chunks, e.g. <code>000-041, 107</code>, followed by the number of damaged chunks not listed
+	 */
+	@Override
+	public synchronized String toString() {
+		StringJoiner result = new StringJoiner(", ");
+		lastChunkByFirstChunk.forEach((first, last) -> {
+			result.add(first.equals(last) ? format("%03d", first) : format("%03d-%03d", first, last));
+		});
+		if (listedChunks < damagedChunks) {
+			result.add(format("%d more", damagedChunks - listedChunks));
+		}
+		return result.toString();
+	}
+
+}
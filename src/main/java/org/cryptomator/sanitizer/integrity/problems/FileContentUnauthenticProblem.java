@@ -7,16 +7,23 @@ import java.nio.file.Path;
 class FileContentUnauthenticProblem implements Problem {
 
 	private final Sensitive<Path> file;
-	private final long chunkNumber;
+	private final String damagedChunks;
+	private final long numberOfDamagedChunks;
+	private final boolean stopped;
 
-	public FileContentUnauthenticProblem(Sensitive<Path> file, long chunkNumber) {
+	public FileContentUnauthenticProblem(Sensitive<Path> file, DamageMap damage) {
 		this.file = file;
-		this.chunkNumber = chunkNumber;
+		this.damagedChunks = damage.toString();
+		this.numberOfDamagedChunks = damage.damagedChunks();
+		this.stopped = damage.hasSkippedChunks();
 	}
 
 	@Override
 	public String toString() {
-		return format("Unauthentic file content at chunk %03d: %s", chunkNumber, file);
+		if (numberOfDamagedChunks == 1 && !stopped) {
+			return format("Unauthentic file content at chunk %s: %s", damagedChunks, file);
+		}
+		return format("Unauthentic file content at %d chunks %s%s: %s", numberOfDamagedChunks, damagedChunks, stopped ? " (check of file stopped)" : "", file);
 	}
 
 	@Override
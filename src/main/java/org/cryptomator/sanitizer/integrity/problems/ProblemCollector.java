@@ -0,0 +1,73 @@
+package org.cryptomator.sanitizer.integrity.problems;
+
+import static java.util.Collections.unmodifiableSet;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Collects problems reported by many threads. Each thread reports into one of several lock-striped buffers, so concurrent reporters rarely contend.
+ */
+class ProblemCollector implements ProblemSink {
+
+	private final List<Problem>[] stripes;
+	private final int mask;
+
+	/**
+	 * @param concurrency Expected number of reporting threads. Rounded up to the next power of two.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	ProblemCollector(int concurrency) {
+		int numStripes = Integer.highestOneBit(Math.max(1, concurrency) * 2 - 1);
+		this.stripes = new List[numStripes];
+		for (int i = 0; i < numStripes; i++) {
+			stripes[i] = new ArrayList<>();
+		}
+		this.mask = numStripes - 1;
+	}
+
+	@Override
+	public void report(Problem problem) {
+		List<Problem> stripe = stripes[(int) Thread.currentThread().getId() & mask];
+		synchronized (stripe) {
+			stripe.add(problem);
+		}
+	}
+
+	public boolean isEmpty() {
+		for (List<Problem> stripe : stripes) {
+			synchronized (stripe) {
+				if (!stripe.isEmpty()) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Passes the collected problems to the given sink, those of each reporting thread in the order they were reported.
+	 */
+	public void reportTo(ProblemSink sink) {
+		for (List<Problem> stripe : stripes) {
+			List<Problem> problems;
+			synchronized (stripe) {
+				problems = new ArrayList<>(stripe);
+			}
+			problems.forEach(sink::report);
+		}
+	}
+
+	public Set<Problem> asSet() {
+		Set<Problem> result = new HashSet<>();
+		for (List<Problem> stripe : stripes) {
+			synchronized (stripe) {
+				result.addAll(stripe);
+			}
+		}
+		return unmodifiableSet(result);
+	}
+
+}
@@ -0,0 +1,17 @@
+package org.cryptomator.sanitizer.integrity.problems;
+
+/**
+ * Receives problems as soon as they are found. Implementations must be thread-safe, because checks may report from many threads at once.
+ */
+public interface ProblemSink {
+
+	void report(Problem problem);
+
+	default ProblemSink andThen(ProblemSink other) {
+		return problem -> {
+			report(problem);
+			other.report(problem);
+		};
+	}
+
+}
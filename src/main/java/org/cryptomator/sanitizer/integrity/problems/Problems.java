@@ -5,32 +5,83 @@ import org.cryptomator.sanitizer.integrity.problems.NameNormalizationProblem.Enc
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.nio.file.Path;
-import java.util.HashSet;
 import java.util.Optional;
 import java.util.Set;
 
-import static java.util.Collections.unmodifiableSet;
-
+/**
+ * Thread-safe. Problems are either collected in lock-striped buffers, see {@link ProblemCollector}, or streamed to a {@link ProblemSink}.
+ */
 public class Problems {
 
-	private final Set<Problem> problems = new HashSet<>();
+	private final Optional<ProblemCollector> collector;
+	private final ProblemSink sink;
 
 	private final Optional<Path> pathToVault;
 
 	public Problems(Path pathToVault) {
+		this(pathToVault, new ProblemCollector(Runtime.getRuntime().availableProcessors()));
+	}
+
+	public Problems(Path pathToVault, ProblemSink sink) {
+		this.collector = Optional.empty();
+		this.sink = sink;
+		this.pathToVault = Optional.of(pathToVault);
+	}
+
+	private Problems(Path pathToVault, ProblemCollector collector) {
+		this.collector = Optional.of(collector);
+		this.sink = collector;
 		this.pathToVault = Optional.of(pathToVault);
 	}
 
 	public Problems() {
+		this.collector = Optional.of(new ProblemCollector(1));
+		this.sink = collector.get();
 		this.pathToVault = Optional.empty();
 	}
 
+	private Problems(Optional<Path> pathToVault, Optional<ProblemCollector> collector, ProblemSink sink) {
+		this.collector = collector;
+		this.sink = sink;
+		this.pathToVault = pathToVault;
+	}
+
+	/**
+	 * @return a view of this instance which additionally reports all problems to the given sink
+	 */
+	public Problems alsoReportingTo(ProblemSink other) {
+		return new Problems(pathToVault, collector, sink.andThen(other));
+	}
+
+	/**
+	 * @return an instance collecting problems the way this instance would report them, to be passed on with {@link #reportTo(Problems)} later
+	 */
+	public Problems buffer() {
+		ProblemCollector buffer = new ProblemCollector(1);
+		return new Problems(pathToVault, Optional.of(buffer), buffer);
+	}
+
+	/**
+	 * Reports the problems collected by this instance to the given instance, in the order they were found.
+	 */
+	public void reportTo(Problems other) {
+		collectedProblems().reportTo(other::report);
+	}
+
 	public void report(Problem problem) {
-		problems.add(problem);
+		sink.report(problem);
+	}
+
+	public boolean isEmpty() {
+		return collectedProblems().isEmpty();
 	}
 
 	public Set<Problem> asSet() {
-		return unmodifiableSet(problems);
+		return collectedProblems().asSet();
+	}
+
+	private ProblemCollector collectedProblems() {
+		return collector.orElseThrow(() -> new IllegalStateException("Problems are streamed to a sink and not collected"));
 	}
 
 	public void reportMissingMFile(Path file, Path mFile) {
@@ -53,8 +104,8 @@ public class Problems {
 		report(new FileHeaderUnauthenticProblem(sensitive(path)));
 	}
 
-	public void reportUnauthenticFileContent(Path path, long chunkNumber) {
-		report(new FileContentUnauthenticProblem(sensitive(path), chunkNumber));
+	public void reportUnauthenticFileContent(Path path, DamageMap damage) {
+		report(new FileContentUnauthenticProblem(sensitive(path), damage));
 	}
 
 	public void reportFileContentProblem(Path path, String expected, String actual) {
@@ -126,38 +177,11 @@ public class Problems {
 	}
 
 	private Sensitive<Exception> sensitive(Exception e) {
-		return new Sensitive<Exception>() {
-			@Override
-			public Exception get() {
-				return e;
-			}
-
-			@Override
-			public String toString() {
-				StringWriter traceWriter = new StringWriter();
-				e.printStackTrace(new PrintWriter(traceWriter));
-				String trace = traceWriter.toString();
-				return pathToVault //
-						.map(pathToVault -> trace.replace(pathToVault.toString(), "<vault>")) //
-						.orElse(trace);
-			}
-		};
+		return new SensitiveException(e, pathToVault);
 	}
 
 	private Sensitive<Path> sensitive(Path path) {
-		return new Sensitive<Path>() {
-			@Override
-			public Path get() {
-				return path;
-			}
-
-			@Override
-			public String toString() {
-				return pathToVault //
-						.map(pathToVault -> pathToVault.relativize(path).toString()) //
-						.orElseGet(() -> path.toString());
-			}
-		};
+		return new SensitivePath(path, pathToVault);
 	}
 
 	public void reportFileSizeInHeader(Path path, long filesize) {
@@ -167,4 +191,56 @@ public class Problems {
 			report(new FileSizeInHeaderProblem(sensitive(path), filesize));
 		}
 	}
+
+	private static class SensitiveException implements Sensitive<Exception> {
+
+		private final Exception e;
+		private final Optional<Path> pathToVault;
+
+		public SensitiveException(Exception e, Optional<Path> pathToVault) {
+			this.e = e;
+			this.pathToVault = pathToVault;
+		}
+
+		@Override
+		public Exception get() {
+			return e;
+		}
+
+		@Override
+		public String toString() {
+			StringWriter traceWriter = new StringWriter();
+			e.printStackTrace(new PrintWriter(traceWriter));
+			String trace = traceWriter.toString();
+			return pathToVault //
+					.map(pathToVault -> trace.replace(pathToVault.toString(), "<vault>")) //
+					.orElse(trace);
+		}
+
+	}
+
+	private static class SensitivePath implements Sensitive<Path> {
+
+		private final Path path;
+		private final Optional<Path> pathToVault;
+
+		public SensitivePath(Path path, Optional<Path> pathToVault) {
+			this.path = path;
+			this.pathToVault = pathToVault;
+		}
+
+		@Override
+		public Path get() {
+			return path;
+		}
+
+		@Override
+		public String toString() {
+			return pathToVault //
+					.map(pathToVault -> pathToVault.relativize(path).toString()) //
+					.orElseGet(() -> path.toString());
+		}
+
+	}
+
 }
\ No newline at end of file
@@ -6,40 +6,40 @@ import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.cryptomator.cryptolib.api.Cryptor;
 
+/**
+ * Resolves cleartext paths to ciphertext paths. Resolved directories are kept in a trie, so paths sharing a prefix encrypt, hash and read each directory of the prefix
+ * only once. Thread-safe.
+ */
 public class CiphertextPathBuilder {
 
 	private final Path vaultRoot;
 	private final Cryptor cryptor;
 	private final Console console;
+	private final Directory root;
 
 	CiphertextPathBuilder(Path vaultRoot, Console console, Cryptor cryptor) {
 		this.vaultRoot = vaultRoot;
 		this.console = console;
 		this.cryptor = cryptor;
+		this.root = new Directory("");
 	}
 
 	public String resolve(String absoluteCleartextPath) {
-		return resolve("", absoluteCleartextPath.split("\\/"));
-	}
-
-	private String resolve(String directoryId, String... cleartextPathFragments) {
+		String[] cleartextPathFragments = absoluteCleartextPath.split("\\/");
 		if (cleartextPathFragments.length < 1) {
 			throw new IllegalArgumentException("cleartextPathFragments must not be empty");
-		} else if (cleartextPathFragments.length == 1) {
-			String ciphertextFileName = cryptor.fileNameCryptor().encryptFilename(cleartextPathFragments[0], directoryId.getBytes(StandardCharsets.UTF_8));
-			return getPath(directoryId, ciphertextFileName);
-		} else {
-			String ciphertextFileName = cryptor.fileNameCryptor().encryptFilename(cleartextPathFragments[0], directoryId.getBytes(StandardCharsets.UTF_8));
-			String directoryFilePath = getPath(directoryId, "0" + ciphertextFileName);
-			String subDirectoryId = getDirectoryId(directoryFilePath);
-			String[] remainingCleartextPathFragments = Arrays.copyOfRange(cleartextPathFragments, 1, cleartextPathFragments.length);
-			assert remainingCleartextPathFragments.length == cleartextPathFragments.length - 1;
-			return resolve(subDirectoryId, remainingCleartextPathFragments);
 		}
+		Directory directory = root;
+		for (int i = 0; i < cleartextPathFragments.length - 1; i++) {
+			directory = directory.subdirectory(cleartextPathFragments[i]);
+		}
+		return directory.pathOf(directory.encrypt(cleartextPathFragments[cleartextPathFragments.length - 1]));
 	}
 
 	private String getDirectoryId(String directoryFilePath) {
@@ -51,12 +51,59 @@ public class CiphertextPathBuilder {
 		} catch (IOException e) {
 			// no-op
 		}
-		return console.readLine("Enter contents of missing file %s: ", directoryFilePath);
+		synchronized (console) {
+			return console.readLine("Enter contents of missing file %s: ", directoryFilePath);
+		}
 	}
 
-	private String getPath(String directoryId, String ciphertextFileName) {
-		String hashedDir = cryptor.fileNameCryptor().hashDirectoryId(directoryId);
-		return "d/" + hashedDir.substring(0, 2) + "/" + hashedDir.substring(2) + "/" + ciphertextFileName;
+	private class Directory {
+
+		private final String directoryId;
+		private final String path;
+		private final Map<String, CompletableFuture<Directory>> subdirectories = new ConcurrentHashMap<>();
+
+		public Directory(String directoryId) {
+			String hashedDir = cryptor.fileNameCryptor().hashDirectoryId(directoryId);
+			this.directoryId = directoryId;
+			this.path = "d/" + hashedDir.substring(0, 2) + "/" + hashedDir.substring(2) + "/";
+		}
+
+		public String encrypt(String cleartextName) {
+			return cryptor.fileNameCryptor().encryptFilename(cleartextName, directoryId.getBytes(StandardCharsets.UTF_8));
+		}
+
+		public String pathOf(String ciphertextFileName) {
+			return path + ciphertextFileName;
+		}
+
+		/**
+		 * Resolves a subdirectory once. The first thread asking for it resolves it outside of the map, other threads asking for the same subdirectory wait for its
+		 * result, so a missing directory file is asked for only once without blocking lookups of other subdirectories. A failed resolution is not kept.
+		 */
+		public Directory subdirectory(String cleartextName) {
+			CompletableFuture<Directory> subdirectory = subdirectories.get(cleartextName);
+			if (subdirectory == null) {
+				CompletableFuture<Directory> resolution = new CompletableFuture<>();
+				subdirectory = subdirectories.putIfAbsent(cleartextName, resolution);
+				if (subdirectory == null) {
+					return resolve(cleartextName, resolution);
+				}
+			}
+			return subdirectory.join();
+		}
+
+		private Directory resolve(String cleartextName, CompletableFuture<Directory> resolution) {
+			try {
+				Directory subdirectory = new Directory(getDirectoryId(pathOf("0" + encrypt(cleartextName))));
+				resolution.complete(subdirectory);
+				return subdirectory;
+			} catch (RuntimeException | Error e) {
+				subdirectories.remove(cleartextName, resolution);
+				resolution.completeExceptionally(e);
+				throw e;
+			}
+		}
+
 	}
 
 }
@@ -0,0 +1,129 @@
+package org.cryptomator.sanitizer.restorer;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.cryptomator.cryptolib.api.Cryptor;
+import org.cryptomator.cryptolib.api.FileContentCryptor;
+import org.cryptomator.cryptolib.api.FileHeader;
+import org.cryptomator.cryptolib.api.FileHeaderCryptor;
+
+/**
+ * Decrypts the content of an encrypted file with as few copies as cryptolib allows.
+ * <p>
+ * Ciphertext is read in windows of several chunks into a reusable direct buffer, and each chunk is decrypted straight from a slice of it. The cleartext chunks of a
+ * window are written with a single gathering write. The target is extended to its final size before the first write. If a chunk cannot be authenticated, all chunks
+ * before it are kept and the target is truncated behind them.
+ */
+class ContentDecryptor {
+
+	private static final int CHUNKS_PER_WINDOW = 32;
+	private static final ThreadLocal<ByteBuffer> CIPHERTEXT_WINDOWS = new ThreadLocal<>();
+
+	private ContentDecryptor() {
+	}
+
+	/**
+	 * @throws org.cryptomator.cryptolib.api.AuthenticationFailedException if the header or a chunk cannot be authenticated
+	 * @throws IllegalArgumentException if the file is too short to contain a header
+	 */
+	public static void decryptContent(Cryptor cryptor, Path ciphertextFile, Path target, OpenOption... targetOptions) throws IOException {
+		FileHeaderCryptor headerCryptor = cryptor.fileHeaderCryptor();
+		FileContentCryptor contentCryptor = cryptor.fileContentCryptor();
+		int headerSize = headerCryptor.headerSize();
+		int chunkSize = contentCryptor.ciphertextChunkSize();
+		ByteBuffer window = ciphertextWindow(Math.max(headerSize, CHUNKS_PER_WINDOW * chunkSize));
+		Set<OpenOption> options = new HashSet<>(Arrays.asList(targetOptions));
+		options.add(WRITE);
+		try (FileChannel in = FileChannel.open(ciphertextFile, READ); //
+				FileChannel out = FileChannel.open(target, options)) {
+			window.clear().limit(headerSize);
+			if (readFully(in, window) != headerSize) {
+				throw new IllegalArgumentException("Unable to read header from channel.");
+			}
+			window.flip();
+			FileHeader header = headerCryptor.decryptHeader(window);
+			long cleartextSize = cleartextSize(contentCryptor, in.size() - headerSize);
+			if (cleartextSize > 0) {
+				out.write(ByteBuffer.allocate(1), cleartextSize - 1);
+			}
+			long written = 0;
+			try {
+				ByteBuffer[] cleartextChunks = new ByteBuffer[CHUNKS_PER_WINDOW];
+				long chunkNumber = 0;
+				int read;
+				do {
+					window.clear();
+					read = readFully(in, window);
+					window.flip();
+					int chunks = 0;
+					try {
+						while (window.hasRemaining()) {
+							ByteBuffer chunk = window.slice();
+							chunk.limit(Math.min(chunkSize, window.remaining()));
+							window.position(window.position() + chunk.limit());
+							cleartextChunks[chunks] = contentCryptor.decryptChunk(chunk, chunkNumber++, header, true);
+							chunks++;
+						}
+					} finally {
+						written += writeFully(out, cleartextChunks, chunks);
+					}
+				} while (read == window.capacity());
+			} finally {
+				if (written != cleartextSize) {
+					out.truncate(written);
+				}
+			}
+		}
+	}
+
+	private static ByteBuffer ciphertextWindow(int size) {
+		ByteBuffer window = CIPHERTEXT_WINDOWS.get();
+		if (window == null || window.capacity() < size) {
+			window = ByteBuffer.allocateDirect(size);
+			CIPHERTEXT_WINDOWS.set(window);
+		}
+		return window;
+	}
+
+	private static long cleartextSize(FileContentCryptor contentCryptor, long ciphertextSize) {
+		int ciphertextChunkSize = contentCryptor.ciphertextChunkSize();
+		int overheadPerChunk = ciphertextChunkSize - contentCryptor.cleartextChunkSize();
+		long lastChunkSize = ciphertextSize % ciphertextChunkSize;
+		return ciphertextSize / ciphertextChunkSize * contentCryptor.cleartextChunkSize() + Math.max(0, lastChunkSize - overheadPerChunk);
+	}
+
+	private static int readFully(FileChannel in, ByteBuffer buf) throws IOException {
+		int total = 0;
+		while (buf.hasRemaining()) {
+			int read = in.read(buf);
+			if (read < 0) {
+				break;
+			}
+			total += read;
+		}
+		return total;
+	}
+
+	private static long writeFully(FileChannel out, ByteBuffer[] buffers, int count) throws IOException {
+		long total = 0;
+		int first = 0;
+		while (first < count) {
+			total += out.write(buffers, first, count - first);
+			while (first < count && !buffers[first].hasRemaining()) {
+				buffers[first++] = null;
+			}
+		}
+		return total;
+	}
+
+}
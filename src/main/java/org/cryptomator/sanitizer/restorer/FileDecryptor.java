@@ -5,9 +5,6 @@ import static org.cryptomator.sanitizer.CryptorHolder.normalizePassphrase;
 
 import java.io.Console;
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.channels.ReadableByteChannel;
-import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
@@ -17,7 +14,6 @@ import java.nio.file.StandardOpenOption;
 import org.cryptomator.cryptolib.api.Cryptor;
 import org.cryptomator.cryptolib.api.CryptorProvider;
 import org.cryptomator.cryptolib.api.KeyFile;
-import org.cryptomator.cryptolib.v1.DecryptingReadableByteChannel;
 
 public class FileDecryptor {
 
@@ -35,15 +31,8 @@ public class FileDecryptor {
 
 		CryptorProvider provider = bestGuessCryptorProvider(keyFile);
 		Cryptor cryptor = provider.createFromKeyFile(keyFile, normalizePassphrase(keyFile, passphrase), keyFile.getVersion());
-		try (ReadableByteChannel readableByteChannel = Files.newByteChannel(ciphertextPath, StandardOpenOption.READ);
-				ReadableByteChannel decryptingReadableByteChannel = new DecryptingReadableByteChannel(readableByteChannel, cryptor, true);
-				WritableByteChannel writableByteChannel = Files.newByteChannel(outputPath, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW)) {
-			ByteBuffer buff = ByteBuffer.allocate(cryptor.fileContentCryptor().ciphertextChunkSize());
-			while (decryptingReadableByteChannel.read(buff) != -1) {
-				buff.flip();
-				writableByteChannel.write(buff);
-				buff.clear();
-			}
+		try {
+			ContentDecryptor.decryptContent(cryptor, ciphertextPath, outputPath, StandardOpenOption.CREATE_NEW);
 		} finally {
 			cryptor.destroy();
 		}
@@ -8,6 +8,8 @@ import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import org.apache.commons.lang3.StringUtils;
 import org.cryptomator.cryptolib.api.Cryptor;
@@ -17,6 +19,13 @@ import org.cryptomator.cryptolib.api.KeyFile;
 public class PathEncryptor {
 
 	public static void encryptPath(Path vaultLocation, CharSequence passphrase, List<String> cleartextList, String outputPath) throws IOException {
+		encryptPath(vaultLocation, passphrase, cleartextList, outputPath, 1);
+	}
+
+	/**
+	 * @param threads Number of threads resolving the cleartext paths. All threads share the directories resolved so far.
+	 */
+	public static void encryptPath(Path vaultLocation, CharSequence passphrase, List<String> cleartextList, String outputPath, int threads) throws IOException {
 		Console console = System.console();
 		if (console == null) {
 			System.err.println("Couldn't get Console instance");
@@ -38,11 +47,26 @@ public class PathEncryptor {
 			paths.put(cleartextPath, null);
 		}
 
-		for (Map.Entry entry : paths.entrySet()) {
+		CiphertextPathBuilder pathBuilder = new CiphertextPathBuilder(vaultLocation, console, cryptor);
+		List<ForkJoinTask<?>> resolutions = new ArrayList<>();
+		for (Map.Entry<String, Path> entry : paths.entrySet()) {
+			resolutions.add(ForkJoinTask.adapt(() -> {
+				try {
+					entry.setValue(resolvePath(vaultLocation, pathBuilder, entry.getKey()));
+				} catch (NoSuchFileException e) {
+					// entry.value will remain null and will be handled at a later point.
+				}
+			}));
+		}
+		if (threads == 1) {
+			resolutions.forEach(ForkJoinTask::invoke);
+		} else {
+			ForkJoinPool pool = new ForkJoinPool(threads);
 			try {
-				entry.setValue(resolvePath(vaultLocation, console, cryptor, (String) entry.getKey()));
-			} catch (NoSuchFileException e) {
-				// entry.value will remain null and will be handled at a later point.
+				resolutions.forEach(pool::execute);
+				resolutions.forEach(ForkJoinTask::join);
+			} finally {
+				pool.shutdown();
 			}
 		}
 
@@ -51,8 +75,8 @@ public class PathEncryptor {
 		cryptor.destroy();
 	}
 
-	private static Path resolvePath(Path vaultRoot, Console console, Cryptor cryptor, String cleartextPath) throws NoSuchFileException {
-		String ciphertextPath = new CiphertextPathBuilder(vaultRoot, console, cryptor).resolve(cleartextPath);
+	private static Path resolvePath(Path vaultRoot, CiphertextPathBuilder pathBuilder, String cleartextPath) throws NoSuchFileException {
+		String ciphertextPath = pathBuilder.resolve(cleartextPath);
 		Path result = vaultRoot.resolve(ciphertextPath);
 		if (Files.isRegularFile(result)) {
 			return result;
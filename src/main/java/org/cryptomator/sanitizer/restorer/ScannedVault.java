@@ -3,15 +3,12 @@ package org.cryptomator.sanitizer.restorer;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.nio.file.Files.createDirectories;
 import static java.nio.file.Files.exists;
-import static java.nio.file.Files.readAllBytes;
+import static java.util.concurrent.TimeUnit.MINUTES;
 import static java.util.stream.Collectors.toList;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import java.nio.ByteBuffer;
-import java.nio.channels.ReadableByteChannel;
-import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
@@ -20,29 +17,43 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.cryptomator.cryptolib.api.AuthenticationFailedException;
 import org.cryptomator.cryptolib.api.Cryptor;
-import org.cryptomator.cryptolib.v1.DecryptingReadableByteChannel;
+import org.cryptomator.sanitizer.MetadataFileCache;
+import org.cryptomator.sanitizer.MetadataFileCache.MetadataFile;
+import org.cryptomator.sanitizer.VaultIndex;
 
 class ScannedVault {
 
 	private static final Pattern ENCRYPTED_FILE_PATTERN = Pattern.compile("^[2-7A-Z]{2}/[2-7A-Z]{30}/((?:[2-7A-Z]{8})*[2-7A-Z=]{8})");
 	private static final Pattern DIRECTORY_FILE_PATTERN = Pattern.compile("^[2-7A-Z]{2}/[2-7A-Z]{30}/0((?:[2-7A-Z]{8})*[2-7A-Z=]{8})");
 	private static final Pattern LNG_FILE_PATTERN = Pattern.compile("^[2-7A-Z]{2}/[2-7A-Z]{30}/([2-7A-Z]{32})(.*)\\.lng");
+	private static final int QUEUED_DECRYPTIONS_PER_THREAD = 4;
 
 	private final Cryptor cryptor;
+	private final MetadataFileCache fileCache;
+	private final VaultIndex index;
 	private final Path location;
 	private final Path dDir;
 
 	private final Map<String, EncryptedDirectoryBuilder> potentialRootsByHashedDirectoryId = new HashMap<>();
 	private final Map<Path, EncryptedDirectoryBuilder> encryptedDirectoriesByPath = new HashMap<>();
 
-	public ScannedVault(Cryptor cryptor, Path location) {
+	private Executor fileDecryptions = Runnable::run;
+
+	public ScannedVault(Cryptor cryptor, VaultIndex index) {
 		this.cryptor = cryptor;
-		this.location = location;
+		this.fileCache = new MetadataFileCache(MetadataFileCache.DEFAULT_MAX_FILES);
+		this.index = index;
+		this.location = index.vaultLocation();
 		this.dDir = location.resolve("d");
 	}
 
@@ -88,16 +99,11 @@ class ScannedVault {
 	private boolean addAsDirectoryFile(Path path, String pathAsString) {
 		Matcher matcher = DIRECTORY_FILE_PATTERN.matcher(pathAsString);
 		if (matcher.find()) {
-			String directoryId;
-			try {
-				directoryId = new String(readAllBytes(path), UTF_8);
-			} catch (IOException e) {
-				throw new UncheckedIOException(e);
-			}
-			if (directoryId.equals("")) {
+			MetadataFile directoryFile = readMetadataFile(path);
+			if (directoryFile.contents().length == 0) {
 				return false;
 			}
-			addDirectoryFile(path, pathAsString, matcher.group(1), directoryId, pathAsString.substring(matcher.end()));
+			addDirectoryFile(path, pathAsString, matcher.group(1), directoryFile, pathAsString.substring(matcher.end()));
 			return true;
 		} else {
 			return false;
@@ -109,19 +115,15 @@ class ScannedVault {
 		if (matcher.find()) {
 			String lngId = matcher.group(1);
 			Path mFile = location.resolve("m").resolve(lngId.substring(0, 2)).resolve(lngId.substring(2, 4)).resolve(lngId + ".lng");
-			if (Files.isRegularFile(mFile)) {
-				try {
-					String filename = new String(Files.readAllBytes(mFile), UTF_8);
-					if (filename.startsWith("0")) {
-						return false;
-					}
-					String suffix = matcher.group(2);
-					EncryptedFile file = new EncryptedFile(path, filename, suffix.isEmpty() ? Optional.empty() : Optional.of(suffix));
-					encryptedDirectoriesByPath.get(path.getParent()).add(file);
-					return true;
-				} catch (IOException e) {
-					throw new UncheckedIOException(e);
+			if (index.isRegularFile(mFile)) {
+				String filename = readMetadataFile(mFile).contentsAsString();
+				if (filename.startsWith("0")) {
+					return false;
 				}
+				String suffix = matcher.group(2);
+				EncryptedFile file = new EncryptedFile(path, filename, suffix.isEmpty() ? Optional.empty() : Optional.of(suffix));
+				encryptedDirectoriesByPath.get(path.getParent()).add(file);
+				return true;
 			}
 			return false;
 		} else {
@@ -134,27 +136,18 @@ class ScannedVault {
 		if (matcher.find()) {
 			String lngId = matcher.group(1);
 			Path mFile = location.resolve("m").resolve(lngId.substring(0, 2)).resolve(lngId.substring(2, 4)).resolve(lngId + ".lng");
-			if (Files.isRegularFile(mFile)) {
-				try {
-					String filename = new String(Files.readAllBytes(mFile), UTF_8);
-					if (!filename.startsWith("0")) {
-						return false;
-					}
-					filename = filename.substring(1);
-					String directoryId;
-					try {
-						directoryId = new String(readAllBytes(path), UTF_8);
-					} catch (IOException e) {
-						throw new UncheckedIOException(e);
-					}
-					if (directoryId.equals("")) {
-						return false;
-					}
-					addDirectoryFile(path, pathAsString, filename, directoryId, matcher.group(2));
-					return true;
-				} catch (IOException e) {
-					throw new UncheckedIOException(e);
+			if (index.isRegularFile(mFile)) {
+				String filename = readMetadataFile(mFile).contentsAsString();
+				if (!filename.startsWith("0")) {
+					return false;
+				}
+				filename = filename.substring(1);
+				MetadataFile directoryFile = readMetadataFile(path);
+				if (directoryFile.contents().length == 0) {
+					return false;
 				}
+				addDirectoryFile(path, pathAsString, filename, directoryFile, matcher.group(2));
+				return true;
 			}
 			return false;
 		} else {
@@ -162,8 +155,17 @@ class ScannedVault {
 		}
 	}
 
-	private void addDirectoryFile(Path path, String pathAsString, String encryptedName, String directoryId, String suffix) {
-		String directoryIdHash = cryptor.fileNameCryptor().hashDirectoryId(directoryId);
+	private MetadataFile readMetadataFile(Path file) {
+		try {
+			return fileCache.get(file);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void addDirectoryFile(Path path, String pathAsString, String encryptedName, MetadataFile directoryFile, String suffix) {
+		String directoryId = directoryFile.contentsAsString();
+		String directoryIdHash = directoryFile.hashedDirectoryId(cryptor.fileNameCryptor());
 		EncryptedDirectoryBuilder directory = potentialRootsByHashedDirectoryId.remove(directoryIdHash);
 		if (directory == null) {
 			Path directoryPath = dDir.resolve(directoryIdHash.substring(0, 2)).resolve(directoryIdHash.substring(2));
@@ -189,11 +191,60 @@ class ScannedVault {
 	}
 
 	public void decryptTo(Path targetLocation) {
+		decryptTo(targetLocation, 1);
+	}
+
+	/**
+	 * Directories are created and the names of all targets are chosen on the calling thread in a fixed order, so name collisions are resolved the same way regardless
+	 * of the number of threads. Only the contents of files are decrypted concurrently by up to <code>threads</code> threads. Files which cannot be decrypted are
+	 * reported and do not stop the others. An unexpected exception of a concurrent decryption is thrown once all files are done.
+	 */
+	public void decryptTo(Path targetLocation, int threads) {
+		if (threads == 1) {
+			fileDecryptions = Runnable::run;
+			decryptRootsTo(targetLocation);
+			return;
+		}
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, MINUTES, new ArrayBlockingQueue<>(threads * QUEUED_DECRYPTIONS_PER_THREAD), new CallerRunsPolicy());
+		AtomicReference<RuntimeException> failure = new AtomicReference<>();
+		fileDecryptions = decryption -> executor.execute(() -> {
+			try {
+				decryption.run();
+			} catch (RuntimeException e) {
+				if (!failure.compareAndSet(null, e)) {
+					failure.get().addSuppressed(e);
+				}
+			}
+		});
+		try {
+			decryptRootsTo(targetLocation);
+		} finally {
+			executor.shutdown();
+			awaitTermination(executor);
+			fileDecryptions = Runnable::run;
+		}
+		if (failure.get() != null) {
+			throw failure.get();
+		}
+	}
+
+	private void decryptRootsTo(Path targetLocation) {
 		potentialRootsByHashedDirectoryId.values().stream() //
 				.map(EncryptedDirectoryBuilder::build) //
 				.forEach(root -> root.decryptTo(targetLocation));
 	}
 
+	private void awaitTermination(ThreadPoolExecutor executor) {
+		try {
+			while (!executor.awaitTermination(1, MINUTES)) {
+				// still decrypting
+			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
 	private class EncryptedDirectory extends Entry {
 
 		private List<Entry> entries;
@@ -303,17 +354,19 @@ class ScannedVault {
 			String name = decryptedName().orElse("unknown-file");
 			Path target = firstFreeName(targetDirectory, name, suffix.orElse(""));
 			System.out.println(dDir.relativize(path) + " -> " + target);
-			try (ReadableByteChannel readableByteChannel = Files.newByteChannel(path, StandardOpenOption.READ);
-					ReadableByteChannel decryptingReadableByteChannel = new DecryptingReadableByteChannel(readableByteChannel, cryptor, true);
-					WritableByteChannel writableByteChannel = Files.newByteChannel(target, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW)) {
-				ByteBuffer buff = ByteBuffer.allocate(cryptor.fileContentCryptor().ciphertextChunkSize());
-				while (decryptingReadableByteChannel.read(buff) != -1) {
-					buff.flip();
-					writableByteChannel.write(buff);
-					buff.clear();
-				}
-			} catch (AuthenticationFailedException e) {
-				System.out.println("Unable to decrypt: " + dDir.relativize(path) + ". AuthenticationFailedException: " + e.getMessage());
+			Files.createFile(target); // reserves the name before the content is decrypted, maybe on another thread
+			fileDecryptions.execute(() -> decryptContentTo(target));
+		}
+
+		/**
+		 * A file which cannot be read completely, e.g. because it is truncated within a chunk, is reported like one that cannot be authenticated. Its target keeps what
+		 * could be decrypted.
+		 */
+		private void decryptContentTo(Path target) {
+			try {
+				ContentDecryptor.decryptContent(cryptor, path, target, StandardOpenOption.TRUNCATE_EXISTING);
+			} catch (AuthenticationFailedException | IllegalArgumentException | IOException e) {
+				System.out.println("Unable to decrypt: " + dDir.relativize(path) + ". " + e.getClass().getSimpleName() + ": " + e.getMessage());
 			}
 		}
 
@@ -1,6 +1,5 @@
 package org.cryptomator.sanitizer.restorer;
 
-import static java.nio.file.Files.walk;
 import static org.cryptomator.sanitizer.CryptorHolder.bestGuessCryptorProvider;
 import static org.cryptomator.sanitizer.CryptorHolder.normalizePassphrase;
 
@@ -13,12 +12,14 @@ import org.cryptomator.cryptolib.api.Cryptor;
 import org.cryptomator.cryptolib.api.CryptorProvider;
 import org.cryptomator.cryptolib.api.KeyFile;
 import org.cryptomator.sanitizer.Passphrase;
+import org.cryptomator.sanitizer.VaultIndex;
 
 public class VaultDecryptor {
 
 	private final Path vaultLocation;
 	private final Path targetLocation;
 	private final Passphrase passphrase;
+	private int threads = 1;
 
 	public VaultDecryptor(Path vaultLocation, Path targetLocation, Passphrase passphrase) throws IOException {
 		this.vaultLocation = vaultLocation;
@@ -26,19 +27,29 @@ public class VaultDecryptor {
 		this.passphrase = passphrase;
 	}
 
+	public VaultDecryptor withThreads(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be positive");
+		}
+		this.threads = threads;
+		return this;
+	}
+
 	public void run() throws IOException {
 		Path masterkeyPath = vaultLocation.resolve("masterkey.cryptomator");
 		KeyFile keyFile = KeyFile.parse(Files.readAllBytes(masterkeyPath));
 		CryptorProvider provider = bestGuessCryptorProvider(keyFile);
 		Cryptor cryptor = provider.createFromKeyFile(keyFile, normalizePassphrase(keyFile, passphrase), keyFile.getVersion());
 		try {
-			ScannedVault vault = new ScannedVault(cryptor, vaultLocation);
+			VaultIndex index = VaultIndex.scan(vaultLocation);
+			index.failures().forEach(failure -> System.out.println("Unable to read: " + failure));
+			ScannedVault vault = new ScannedVault(cryptor, index);
 			Path dDirectory = vaultLocation.resolve("d");
-			try (Stream<Path> filesInVault = walk(dDirectory)) {
-				filesInVault.forEach(path -> vault.add(path));
+			try (Stream<VaultIndex.Entry> filesInVault = index.walk(dDirectory)) {
+				filesInVault.forEach(entry -> vault.add(entry.path()));
 			}
 
-			vault.decryptTo(targetLocation);
+			vault.decryptTo(targetLocation, threads);
 		} finally {
 			cryptor.destroy();
 		}
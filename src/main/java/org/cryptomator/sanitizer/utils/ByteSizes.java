@@ -0,0 +1,37 @@
+package org.cryptomator.sanitizer.utils;
+
+public class ByteSizes {
+
+	private static final long KIBI = 1024;
+	private static final String[] KIBI_POWERS = {"B", "KiB", "MiB", "GiB", "TiB", "PiB", "EiB", "ZiB", "YiB"};
+
+	/**
+	 * @return the size with one decimal in the largest binary unit it reaches, e.g. <code>1.5 MiB</code>
+	 */
+	public static String format(long bytes) {
+		int unit = 0;
+		double value = bytes;
+		while (value >= KIBI && unit < KIBI_POWERS.length - 1) {
+			value /= KIBI;
+			unit++;
+		}
+		return unit == 0 ? bytes + " " + KIBI_POWERS[0] : String.format("%.1f %s", value, KIBI_POWERS[unit]);
+	}
+
+	/**
+	 * @return the size rounded down to whole binary units, e.g. <code>~1 MiB</code>, which does not reveal the exact size
+	 */
+	public static String obfuscate(long size) {
+		int i = 0;
+		while (i < 8 && size > KIBI) {
+			size = size / KIBI;
+			i++;
+		}
+		if (i == 0) {
+			return size + " " + KIBI_POWERS[i];
+		} else {
+			return "~" + size + " " + KIBI_POWERS[i];
+		}
+	}
+
+}
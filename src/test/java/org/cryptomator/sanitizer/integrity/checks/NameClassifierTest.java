@@ -0,0 +1,169 @@
+package org.cryptomator.sanitizer.integrity.checks;
+
+import static java.util.regex.Pattern.CASE_INSENSITIVE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+/**
+ * Compares {@link NameClassifier} with {@link Pattern#matches(String, CharSequence)} using {@link Pattern#CASE_INSENSITIVE}, which it replaces in the checks.
+ */
+public class NameClassifierTest {
+
+	/**
+	 * The patterns of the vault format checks in {@link org.cryptomator.sanitizer.integrity.IntegrityCheck}.
+	 */
+	private static final List<String> VAULT_FORMAT_PATTERNS = List.of( //
+			"d", //
+			"m", //
+			"masterkey.cryptomator", //
+			"masterkey.cryptomator.bkup", //
+			"[A-Z2-7]{2}", //
+			"[A-Z2-7]{30}", //
+			"0([A-Z2-7]{8})*[A-Z2-7=]{8}", //
+			"0([A-Z2-7]{8})*[A-Z2-7=]{8}.+", //
+			"([A-Z2-7]{8})*[A-Z2-7=]{8}", //
+			"([A-Z2-7]{8})*[A-Z2-7=]{8}.+", //
+			"0?([A-Z2-7]{8})*[A-Z2-7=]{1,7}", //
+			"[A-Z2-7]{32}\\.lng", //
+			"[A-Z2-7]{32}.+\\.lng");
+
+	/**
+	 * Names whose classification depends on details of the regex engine: line terminators, which <code>.</code> does not match, and non-ASCII chars, which
+	 * {@link Pattern#CASE_INSENSITIVE} does not fold without {@link Pattern#UNICODE_CASE}.
+	 */
+	private static final List<String> EDGE_CASES = List.of( //
+			"", //
+			"D", //
+			"MasterKey.Cryptomator", //
+			"masterkeyXcryptomator", //
+			"masterkey.cryptomator\n", //
+			"masterkey\ncryptomator", //
+			"masterkey\rcryptomator", //
+			"masterkey\u0085cryptomator", //
+			"masterkey\u2028cryptomator", //
+			"masterkey\u2029cryptomator", //
+			"masterkey\u00A0cryptomator", //
+			"ma\u017Fterkey.cryptomator", // LATIN SMALL LETTER LONG S folds to S only with UNICODE_CASE
+			"\u212AABCDEFG", // KELVIN SIGN folds to K only with UNICODE_CASE
+			"\u0131ABCDEFG", // LATIN SMALL LETTER DOTLESS I
+			"abcdefgh", //
+			"ABCDEFGH.TXT", //
+			"ABCDEFGH\n", //
+			"ABCDEFGH\r\n", //
+			"ABCDEFGH\u0085", //
+			"ABCDEFGH\u2028", //
+			"ABCDEFGH\u00E9", //
+			"ABCDEFGH\uD83D\uDE00", // a supplementary code point is a single char to the regex engine
+			"ABCDEFGH\uD83D", // a lone high surrogate
+			"ABCDEFGH\uDE00", // a lone low surrogate
+			"0ABCDEFGH", //
+			"0ABCDEFG=", //
+			"0ABCDEF", //
+			"ABCDEFGHIJKLMNOPQRSTUVWXYZ234567.lng", //
+			"abcdefghijklmnopqrstuvwxyz234567.LNG", //
+			"ABCDEFGHIJKLMNOPQRSTUVWXYZ234567 (1).lng", //
+			"ABCDEFGHIJKLMNOPQRSTUVWXYZ234567\n.lng", //
+			"ABCDEFGHIJKLMNOPQRSTUVWXYZ234567\u2029.lng");
+
+	private static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789=.-_ ()\n\r\u0085\u2028\u2029\u00A0\u00E9\u017F\u0131\u212A\uD83D\uDE00";
+	private static final String BASE32 = "ABCDEFGHIJKLMNOPQRSTUVWXYZ234567";
+
+	private final NameClassifier classifier = NameClassifier.compile(VAULT_FORMAT_PATTERNS.stream().map(Optional::of).collect(Collectors.toList()));
+	private final List<Pattern> patterns = VAULT_FORMAT_PATTERNS.stream().map(pattern -> Pattern.compile(pattern, CASE_INSENSITIVE)).collect(Collectors.toList());
+
+	@Test
+	public void testEdgeCasesAreClassifiedLikePatternMatches() {
+		EDGE_CASES.forEach(this::assertClassifiedLikePatternMatches);
+	}
+
+	@Test
+	public void testRandomNamesAreClassifiedLikePatternMatches() {
+		Random random = new Random(42);
+		for (int i = 0; i < 100_000; i++) {
+			assertClassifiedLikePatternMatches(randomName(random));
+		}
+	}
+
+	@Test
+	public void testMutatedEncryptedNamesAreClassifiedLikePatternMatches() {
+		Random random = new Random(42);
+		for (int i = 0; i < 100_000; i++) {
+			StringBuilder name = new StringBuilder(random.nextBoolean() ? "0" : "");
+			int length = 8 * (1 + random.nextInt(8)) - random.nextInt(3);
+			for (int j = 0; j < length; j++) {
+				name.append(BASE32.charAt(random.nextInt(BASE32.length())));
+			}
+			for (int j = random.nextInt(4); j > 0; j--) {
+				name.append('=');
+			}
+			name.append(random.nextBoolean() ? "" : ".lng");
+			int mutations = random.nextInt(3);
+			for (int j = 0; j < mutations && name.length() > 0; j++) {
+				name.setCharAt(random.nextInt(name.length()), ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+			}
+			assertClassifiedLikePatternMatches(name.toString());
+		}
+	}
+
+	@Test
+	public void testEmptyPatternMatchesAnyName() {
+		NameClassifier classifier = NameClassifier.compile(List.of(Optional.of("d"), Optional.empty()));
+
+		assertEquals(0b11L, classifier.classify("d"));
+		assertEquals(0b10L, classifier.classify("anything\n"));
+	}
+
+	@Test
+	public void testNonAsciiCharsAreNotFolded() {
+		NameClassifier classifier = NameClassifier.compile("masterkey.cryptomator");
+
+		assertTrue(classifier.matches("MASTERKEY.CRYPTOMATOR"));
+		assertFalse(classifier.matches("ma\u017Fterkey.cryptomator"));
+	}
+
+	@Test
+	public void testDotDoesNotMatchLineTerminators() {
+		NameClassifier classifier = NameClassifier.compile("a.b");
+
+		assertTrue(classifier.matches("a b"));
+		assertFalse(classifier.matches("a\nb"));
+		assertFalse(classifier.matches("a\rb"));
+		assertFalse(classifier.matches("a\u0085b"));
+		assertFalse(classifier.matches("a\u2028b"));
+		assertFalse(classifier.matches("a\u2029b"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnsupportedSyntaxIsRejected() {
+		NameClassifier.compile("(?i)d");
+	}
+
+	private String randomName(Random random) {
+		int length = random.nextInt(40);
+		StringBuilder name = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			name.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+		}
+		return name.toString();
+	}
+
+	private void assertClassifiedLikePatternMatches(String name) {
+		long expected = 0;
+		for (int i = 0; i < patterns.size(); i++) {
+			if (patterns.get(i).matcher(name).matches()) {
+				expected |= 1L << i;
+			}
+		}
+		assertEquals("Classification of \"" + name + "\"", Long.toBinaryString(expected), Long.toBinaryString(classifier.classify(name)));
+	}
+
+}